@@ -1,6 +1,8 @@
 module CollegeSubletApp {
     requires javafx.controls;
     requires javafx.fxml;
+    requires jdk.httpserver;
+    requires java.net.http;
 
     opens controller to javafx.fxml;
     opens view to javafx.fxml;
@@ -0,0 +1,84 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import model.ListingImporter;
+import model.SubletStorage;
+
+/**
+ * Throughput of the bulk listing import. Either imports the given file, or
+ * writes a file of generated listings in the given format (CSV or JSONL)
+ * and imports that. About one row in a thousand is invalid on purpose, to
+ * exercise validation. Prints the import result and the first rejected rows.
+ *
+ * Imported listings are persisted like any other listing, so run it in a
+ * scratch directory.
+ *
+ * Usage: BulkImportBenchmark [listings|file] [csv|jsonl]
+ */
+public class BulkImportBenchmark {
+
+    private static final String[] LOCATIONS = { "Boston", "Cambridge", "Allston", "Brookline", "Fenway", "Somerville" };
+    private static final String[] KINDS = { "Sunny Room", "Luxury Flat", "Private Suite", "Modern Loft", "Shared Room", "Quiet Basement" };
+    private static final String[] DESCRIPTIONS = { "Close to campus", "Furnished and quiet", "Newly renovated",
+            "Utilities included", "Pet friendly", "Near the T, \"walk\" to class" };
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? args[0] : "1000000";
+        Path file;
+        if (source.chars().allMatch(Character::isDigit)) {
+            boolean json = args.length > 1 && args[1].equalsIgnoreCase("jsonl");
+            file = Files.createTempFile("listings", json ? ".jsonl" : ".csv");
+            file.toFile().deleteOnExit();
+            long start = System.nanoTime();
+            generate(file, Integer.parseInt(source), json);
+            System.out.printf("Generated %s (%.1f MB) in %d ms%n", file.getFileName(),
+                    Files.size(file) / 1e6, (System.nanoTime() - start) / 1_000_000);
+        } else {
+            file = Path.of(source);
+        }
+
+        // load the existing catalog first, so the import measures only itself
+        int before = SubletStorage.size();
+        ListingImporter.Result result = ListingImporter.importFile(file);
+        System.out.println(result);
+        for (String error : result.getErrors()) {
+            System.out.println("  " + error);
+        }
+
+        long start = System.nanoTime();
+        SubletStorage.flush();
+        System.out.printf("Catalog: %,d -> %,d listings; persisted in another %d ms%n",
+                before, SubletStorage.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void generate(Path file, int listings, boolean json) throws IOException {
+        Random random = new Random(42);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (!json) {
+                out.write("title,location,price,description,subletMode\n");
+            }
+            for (int i = 0; i < listings; i++) {
+                String title = KINDS[random.nextInt(KINDS.length)] + " #" + i;
+                String location = LOCATIONS[random.nextInt(LOCATIONS.length)];
+                String price = String.format("%d.%02d", 500 + random.nextInt(2500), random.nextInt(100));
+                String description = DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)];
+                String mode = random.nextBoolean() ? "short" : "long";
+                if (random.nextInt(1000) == 0) {
+                    price = "free";
+                }
+                if (json) {
+                    out.write("{\"title\":\"" + title + "\",\"location\":\"" + location + "\",\"price\":" + price
+                            + ",\"description\":\"" + description.replace("\"", "\\\"") + "\",\"subletMode\":\"" + mode + "\"}\n");
+                } else {
+                    out.write(title + "," + location + "," + price + ",\"" + description.replace("\"", "\"\"") + "\"," + mode + "\n");
+                }
+            }
+        }
+    }
+}
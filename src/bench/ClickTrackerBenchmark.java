@@ -0,0 +1,77 @@
+package bench;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import model.SubletClickTracker;
+
+/**
+ * Multi-threaded stress test for SubletClickTracker.
+ * Hammers a small set of hot listing ids from many threads, then checks that
+ * every single click was counted and reports the click rate.
+ *
+ * Usage: ClickTrackerBenchmark [threads] [clicksPerThread] [hotListings]
+ */
+public class ClickTrackerBenchmark {
+
+    // well above any real listing id, so seed clicks don't skew the totals
+    private static final int FIRST_ID = 1_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        int clicksPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int hotListings = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        long[] expected = new long[hotListings];
+        long[][] perThread = new long[threads][hotListings];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            long[] mine = perThread[t];
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < clicksPerThread; i++) {
+                    int slot = random.nextInt(hotListings);
+                    SubletClickTracker.registerClick(FIRST_ID + slot);
+                    mine[slot]++;
+                }
+                done.countDown();
+            });
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        for (long[] mine : perThread) {
+            for (int slot = 0; slot < hotListings; slot++) {
+                expected[slot] += mine[slot];
+            }
+        }
+
+        Map<Integer, Long> snapshot = SubletClickTracker.snapshot();
+        long lost = 0;
+        for (int slot = 0; slot < hotListings; slot++) {
+            long counted = snapshot.getOrDefault(FIRST_ID + slot, 0L);
+            lost += expected[slot] - counted;
+        }
+
+        long total = (long) threads * clicksPerThread;
+        System.out.printf("%d threads x %d clicks over %d listings: %.1f ms, %.1f M clicks/s%n",
+                threads, clicksPerThread, hotListings, elapsed / 1e6, total / (elapsed / 1e3));
+        if (lost != 0) {
+            System.out.println("FAILED: " + lost + " clicks lost");
+            System.exit(1);
+        }
+        System.out.println("OK: no lost updates");
+    }
+}
@@ -0,0 +1,144 @@
+package bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.SubletStorage;
+import server.ListingServer;
+
+/**
+ * Load test for the HTTP API. Simulates many students at once, each on its
+ * own virtual thread, browsing the way the desktop app does:
+ * - filtered list pages
+ * - text searches
+ * - listing details
+ * - clicks
+ * - the popular listings
+ * Reports throughput, latency percentiles and errors.
+ *
+ * Starts a server in-process on a free port unless a base URL is given.
+ *
+ * Usage: ListingServerLoadTest [students] [requestsPerStudent] [baseUrl]
+ */
+public class ListingServerLoadTest {
+
+    private static final String[] LOCATIONS = { "Allston", "Boston", "Brookline", "Cambridge", "Fenway", "Somerville" };
+    private static final String[] WORDS = { "quiet", "campus", "renovated", "pet", "utilities", "furnished", "sunny" };
+
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int requestsPerStudent = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        ListingServer embedded = null;
+        String baseUrl;
+        if (args.length > 2) {
+            baseUrl = args[2];
+        } else {
+            embedded = new ListingServer(0);
+            embedded.start();
+            baseUrl = "http://localhost:" + embedded.getPort();
+        }
+        int listings = Math.max(1, SubletStorage.size());
+
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(threads)
+                .build();
+
+        // warm up the server's code paths before measuring
+        for (int i = 0; i < 500; i++) {
+            send(client, request(baseUrl, listings));
+        }
+
+        long[][] latencies = new long[students][requestsPerStudent];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(students);
+        for (int s = 0; s < students; s++) {
+            long[] mine = latencies[s];
+            threads.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < requestsPerStudent; i++) {
+                        HttpRequest request = request(baseUrl, listings);
+                        long begin = System.nanoTime();
+                        int status = send(client, request);
+                        mine[i] = System.nanoTime() - begin;
+                        if (status >= 400) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        threads.shutdown();
+
+        long[] all = new long[students * requestsPerStudent];
+        for (int s = 0; s < students; s++) {
+            System.arraycopy(latencies[s], 0, all, s * requestsPerStudent, requestsPerStudent);
+        }
+        Arrays.sort(all);
+        System.out.printf("%d students x %d requests against %s (%d listings, %d cores)%n",
+                students, requestsPerStudent, baseUrl, listings, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%,d requests in %d ms: %,.0f requests/s, %d errors%n",
+                all.length, elapsed / 1_000_000, all.length / (elapsed / 1e9), errors.get());
+        System.out.printf("latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), all[all.length - 1] / 1e6);
+
+        if (embedded != null) {
+            embedded.stop(0);
+        }
+    }
+
+    // one browsing step: mostly list pages, then searches, details, clicks and the popular list
+    private static HttpRequest request(String baseUrl, int listings) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int roll = random.nextInt(100);
+        String path;
+        if (roll < 45) {
+            int min = 500 + random.nextInt(10) * 100;
+            path = "/listings?location=" + LOCATIONS[random.nextInt(LOCATIONS.length)]
+                    + "&min=" + min + "&max=" + (min + 1000) + "&sort=PRICE&limit=50";
+        } else if (roll < 60) {
+            path = "/listings?q=" + WORDS[random.nextInt(WORDS.length)] + "&limit=20";
+        } else if (roll < 80) {
+            path = "/listings/" + random.nextInt(listings);
+        } else if (roll < 95) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/listings/" + random.nextInt(listings) + "/clicks"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build();
+        } else {
+            path = "/popular?window=LAST_HOUR&n=10";
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private static int send(HttpClient client, HttpRequest request) throws InterruptedException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return 599;
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+    }
+}
@@ -0,0 +1,102 @@
+package bench;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.ListingQuery;
+import model.SubletListing;
+import model.SubletStorage;
+
+/**
+ * Query throughput of the region-sharded listing index as client threads are
+ * added. Each client runs a mix of:
+ * - single-region price-range queries, which read one shard
+ * - "All" price-range queries, scattered over every shard and merged
+ * - "All" top-50 queries, each shard giving up at most 50 ids
+ * Reports queries per second and the speedup over one client for 1, 2, 4 ...
+ * up to twice the core count, plus the latency of a single large "All" query.
+ *
+ * Tops the catalog up to the requested size with generated listings first.
+ * They are persisted like any other listing, so run it in a scratch directory.
+ *
+ * Usage: ShardedQueryBenchmark [listings] [regions] [secondsPerStep]
+ */
+public class ShardedQueryBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int listings = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int regions = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = SubletStorage.size(); i < listings; i++) {
+            SubletStorage.addListing(new SubletListing("Listing " + i, region(random.nextInt(regions)),
+                    500 + random.nextInt(200_000) / 100.0, "Generated", random.nextBoolean() ? "short" : "long"));
+        }
+        SubletStorage.flush();
+        System.out.printf("%,d listings in %d regions (%d ms to load), %d cores%n",
+                SubletStorage.size(), regions, (System.nanoTime() - start) / 1_000_000, cores);
+
+        // one wide "All" query: the whole scatter-gather on its own
+        ListingQuery wide = new ListingQuery(null, 800, 1800);
+        for (int i = 0; i < 20; i++) {
+            SubletStorage.queryIds(wide);
+        }
+        long best = Long.MAX_VALUE;
+        int matched = 0;
+        for (int i = 0; i < 20; i++) {
+            long begin = System.nanoTime();
+            matched = SubletStorage.queryIds(wide).length;
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        System.out.printf("\"All\" $800-$1800: %,d ids in %.2f ms%n", matched, best / 1e6);
+
+        double baseline = 0;
+        for (int threads = 1; threads <= cores * 2; threads *= 2) {
+            double rate = run(threads, regions, seconds);
+            if (threads == 1) {
+                baseline = rate;
+            }
+            System.out.printf("%3d clients: %,10.0f queries/s  (x%.2f)%n", threads, rate, rate / baseline);
+        }
+    }
+
+    private static double run(int threads, int regions, int seconds) throws InterruptedException {
+        AtomicLong queries = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long begin = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                long sink = 0;
+                while (System.nanoTime() < deadline) {
+                    double min = 500 + random.nextInt(1500);
+                    int roll = random.nextInt(3);
+                    if (roll == 0) {
+                        sink += SubletStorage.queryIds(new ListingQuery(region(random.nextInt(regions)), min, min + 200)).length;
+                    } else if (roll == 1) {
+                        sink += SubletStorage.queryIds(new ListingQuery(null, min, min + 20)).length;
+                    } else {
+                        sink += SubletStorage.queryIds(new ListingQuery(null, min, min + 500), 50).length;
+                    }
+                    count++;
+                }
+                queries.addAndGet(count + (sink == -1 ? 1 : 0));
+                done.countDown();
+            });
+            worker.start();
+        }
+        done.await();
+        return queries.get() / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private static String region(int i) {
+        return "Region " + i;
+    }
+}
@@ -1,34 +1,32 @@
 package controller;
 
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.ResourceBundle;
 
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.PieChart;
 import javafx.scene.chart.XYChart;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 import model.ApplicationQueue;
 import model.AppliedApplication;
+import model.DashboardAggregates;
+import model.PopularSublets;
 import model.SubletClickTracker;
 import model.SubletListing;
 import model.SubletStorage;
 
-public class AdminDashboardController implements Initializable {
+public class AdminDashboardController implements Initializable, ViewRegistry.Resettable {
 
 	@FXML
 	private BarChart<String, Number> regionPriceChart;
@@ -39,8 +37,7 @@ public class AdminDashboardController implements Initializable {
 	@FXML
 	private void handleGoHome() {
 	    try {
-	        FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/main_view.fxml"));
-	        Parent root = loader.load();
+	        Parent root = ViewRegistry.root(ViewRegistry.View.MAIN);
 	        Stage stage = (Stage) regionPriceChart.getScene().getWindow();
 	        stage.setScene(new Scene(root));
 	    } catch (Exception e) {
@@ -50,8 +47,7 @@ public class AdminDashboardController implements Initializable {
 	@FXML
 	private void handleLogout() {
 	    try {
-	        FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/login.fxml"));
-	        Parent root = loader.load();
+	        Parent root = ViewRegistry.root(ViewRegistry.View.LOGIN);
 	        Stage stage = (Stage) regionPriceChart.getScene().getWindow();
 	        stage.setScene(new Scene(root));
 	    } catch (Exception e) {
@@ -60,56 +56,73 @@ public class AdminDashboardController implements Initializable {
 	}
 	
 	@FXML private PieChart popularSubletsChart;
+	@FXML private ComboBox<PopularSublets.Window> popularWindowBox;
 	@FXML private TableView<AppliedApplication> applicationQueueTable;
 	@FXML private TableColumn<AppliedApplication, String> nameColumn;
 	@FXML private TableColumn<AppliedApplication, String> titleColumn;
 
+	// number of listings shown individually in the popular sublets chart
+	private static final int POPULAR_SLICES = 8;
+
+	// applications removed from the queue per "Process Next Batch" click
+	private static final int PROCESS_BATCH_SIZE = 10;
+
+	// false until the screen is first shown; a warm-up must not load the statistics
+	private boolean shown;
+
+	// builds the screen only; the statistics are loaded by reset() each time it is shown
 	@Override
 	public void initialize(URL location, ResourceBundle resources) {
+		popularWindowBox.getItems().setAll(PopularSublets.Window.values());
+		popularWindowBox.setValue(PopularSublets.Window.LAST_DAY);
+		nameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
+		titleColumn.setCellValueFactory(data -> new SimpleStringProperty(
+		    data.getValue().getListing().getTitle()
+		));
+	}
+
+	/**
+	 * Reloads every chart and the application queue, each time the dashboard is shown.
+	 */
+	@Override
+	public void reset() {
+		shown = true;
 		loadRegionAveragePrices();
 		loadSubletModeStats();
 		loadPopularSublets();
 		loadApplicationQueue();
 	}
-	
-	private void loadRegionAveragePrices() {
-	    Map<String, List<Double>> regionPrices = new HashMap<>();
 
-	    for (SubletListing listing : SubletStorage.getListings()) {
-	        String region = listing.getLocation(); // Changed from getRegion() to getLocation()
-	        regionPrices.putIfAbsent(region, new ArrayList<>());
-	        regionPrices.get(region).add(listing.getPrice());
-	    }
+	@FXML
+	private void handlePopularWindowChange() {
+		if (shown) {
+			loadPopularSublets();
+		}
+	}
 
+	@FXML
+	private void handleProcessBatch() {
+		ApplicationQueue.dequeueBatch(PROCESS_BATCH_SIZE);
+		applicationQueueTable.getItems().setAll(ApplicationQueue.getAll());
+	}
+	
+	private void loadRegionAveragePrices() {
 	    XYChart.Series<String, Number> series = new XYChart.Series<>();
 	    series.setName("Rent Average Stats by Region");
 
-	    for (Map.Entry<String, List<Double>> entry : regionPrices.entrySet()) {
-	        String region = entry.getKey();
-	        List<Double> prices = entry.getValue();
-	        double avg = prices.stream().mapToDouble(Double::doubleValue).average().orElse(0);
-	        series.getData().add(new XYChart.Data<>(region, avg));
+	    // running per-region sums are kept by DashboardAggregates, no catalog scan needed
+	    for (DashboardAggregates.RegionSummary region : DashboardAggregates.regionSummaries()) {
+	        series.getData().add(new XYChart.Data<>(region.getRegion(), region.getAveragePrice()));
 	    }
 
+	    regionPriceChart.getData().clear();
 	    regionPriceChart.getData().add(series);
 	}
 
 	private void loadSubletModeStats() {
-		int shortTerm = 0;
-		int longTerm = 0;
-
-		for (SubletListing listing: SubletStorage.getListings()) {
-			if (listing.getSubletMode().equalsIgnoreCase("short")) {
-				shortTerm++;
-			} else {
-				longTerm++;
-			}
-		}
-
-
 		ObservableList<PieChart.Data> pieData = FXCollections.observableArrayList(
-				new PieChart.Data("short term", shortTerm),
-				new PieChart.Data("long term", longTerm)
+				new PieChart.Data("short term", DashboardAggregates.shortTermCount()),
+				new PieChart.Data("long term", DashboardAggregates.longTermCount())
 						);
 				subletModeChart.setData(pieData);
 
@@ -117,21 +130,25 @@ public class AdminDashboardController implements Initializable {
 	private void loadPopularSublets() {
 	    ObservableList<PieChart.Data> data = FXCollections.observableArrayList();
 
-	    for (Map.Entry<SubletListing, Integer> entry : SubletClickTracker.getClickCounts().entrySet()) {
-	        String title = entry.getKey().getTitle();
-	        int count = entry.getValue();
-	        data.add(new PieChart.Data(title, count));
+	    // only the top slices are drawn; every other click is lumped into "Other"
+	    PopularSublets.Ranking ranking = SubletClickTracker.topListings(popularWindowBox.getValue(), POPULAR_SLICES);
+	    long other = ranking.getOtherClicks();
+	    for (PopularSublets.Entry entry : ranking.getTop()) {
+	        SubletListing listing = SubletStorage.getListing(entry.getListingId());
+	        if (listing != null) {
+	            data.add(new PieChart.Data(listing.getTitle(), entry.getClicks()));
+	        } else {
+	            other += entry.getClicks();
+	        }
+	    }
+	    if (other > 0) {
+	        data.add(new PieChart.Data("Other", other));
 	    }
 
 	    popularSubletsChart.setData(data);
 	}
 
 	private void loadApplicationQueue() {
-	    nameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-	    titleColumn.setCellValueFactory(data -> new SimpleStringProperty(
-	        data.getValue().getListing().getTitle()
-	    ));
-
 	    ObservableList<AppliedApplication> list = FXCollections.observableArrayList(ApplicationQueue.getAll());
 	    applicationQueueTable.setItems(list);
 	}
@@ -3,7 +3,6 @@ package controller;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.TableColumn;
@@ -11,8 +10,13 @@ import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.event.ActionEvent;
 import javafx.scene.Node;
+import model.ApplicationQueue;
 import model.AppliedApplication;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 public class ApplicationStatusController {
 
@@ -20,6 +24,7 @@ public class ApplicationStatusController {
     @FXML private TableColumn<AppliedApplication, String> nameColumn;
     @FXML private TableColumn<AppliedApplication, String> emailColumn;
     @FXML private TableColumn<AppliedApplication, String> titleColumn;
+    @FXML private TableColumn<AppliedApplication, String> statusColumn;
 
     @FXML
     public void initialize() {
@@ -31,17 +36,25 @@ public class ApplicationStatusController {
             );
         });
 
-        ObservableList<AppliedApplication> data = FXCollections.observableArrayList(AppliedApplication.getAll());
+        // processed applications first, then the ones still waiting, each oldest first
+        List<AppliedApplication> processed = ApplicationQueue.getProcessed();
+        Set<AppliedApplication> done = Collections.newSetFromMap(new IdentityHashMap<>());
+        done.addAll(processed);
+        statusColumn.setCellValueFactory(data -> new javafx.beans.property.SimpleStringProperty(
+                done.contains(data.getValue()) ? "Processed" : "Pending"));
+
+        ObservableList<AppliedApplication> data = FXCollections.observableArrayList(processed);
+        data.addAll(ApplicationQueue.getAll());
         tableView.setItems(data);
     }
 
     public void handleBack(ActionEvent event) {
-        goToNext("/view/ApplyView.fxml", event);
+        goToNext(ViewRegistry.View.APPLY, event);
     }
 
-    private void goToNext(String path, ActionEvent event) {
+    private void goToNext(ViewRegistry.View view, ActionEvent event) {
         try {
-            Parent nextView = FXMLLoader.load(getClass().getResource(path));
+            Parent nextView = ViewRegistry.root(view);
             Scene currentScene = ((Node) event.getSource()).getScene();
             currentScene.setRoot(nextView);
         } catch (IOException e) {
@@ -4,7 +4,6 @@ import java.io.IOException;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -15,6 +14,7 @@ import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import model.ApplicationQueue;
 import model.AppliedApplication;
 import model.SubletListing;
 
@@ -61,13 +61,13 @@ public class ApplyController {
         }
         AppliedApplication app = new AppliedApplication(nameField.getText(), emailField.getText(), listing);
         AppliedApplication.setCurrent(app);
-        AppliedApplication.addApplication(app);  
+        ApplicationQueue.enqueue(app);
 
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Application submitted!\nDo you want to check your application status?", ButtonType.YES, ButtonType.NO);
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.YES) {
                 try {
-                    Parent statusView = FXMLLoader.load(getClass().getResource("/view/application_status.fxml"));
+                    Parent statusView = ViewRegistry.root(ViewRegistry.View.APPLICATION_STATUS);
                     Stage stage = (Stage) nameField.getScene().getWindow();
                     stage.setScene(new Scene(statusView));
                 } catch (IOException e) {
@@ -82,13 +82,12 @@ public class ApplyController {
         alert.showAndWait();
     }
     public void handleBack(ActionEvent event) {
-        goToNext("/view/step4_sublet_list.fxml", event);
+        goToNext(ViewRegistry.View.STEP4_SUBLET_LIST, event);
     }
 
-    private void goToNext(String fxmlPath, ActionEvent event) {
+    private void goToNext(ViewRegistry.View view, ActionEvent event) {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource(fxmlPath));
-            Parent nextView = loader.load();
+            Parent nextView = ViewRegistry.root(view);
 
             Stage stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
             stage.setScene(new Scene(nextView));
@@ -0,0 +1,181 @@
+package controller;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javafx.application.Platform;
+
+/**
+ * Runs a query off the FX thread and hands the result back on it, for
+ * screens that re-query on every keystroke.
+ * - debounce: a submitted query waits a short window first; a newer submit
+ *   in that window replaces it before it ever runs
+ * - cancellation: a newer submit interrupts a query that is already running.
+ *   The catalog's long scans (search scoring, sort walks, the shard gather)
+ *   check for that and give up early with a CancellationException; a result
+ *   that still arrives is dropped, so only the latest query's result is
+ *   delivered
+ * - the result is passed to the consumer in one call on the FX thread, so
+ *   the screen can swap it in as a whole
+ *
+ * Submit from the FX thread. Queries from every instance share one
+ * background thread and one set of metrics.
+ */
+public class BackgroundQuery<R> {
+
+    private static final long DEBOUNCE_MILLIS = 150;
+    // latencies kept for the percentiles in the metrics report
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "background-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder debounced = new LongAdder();
+    private static final LongAdder cancelled = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+    private static final long[] latencies = new long[LATENCY_SAMPLES];
+    private static long latencyCount;
+    private static long latencyTotal;
+    private static long latencyMax;
+
+    static {
+        if (Boolean.getBoolean("sublet.filterMetrics")) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(metricsReport())));
+        }
+    }
+
+    private final Consumer<R> onResult;
+    private final AtomicLong generation = new AtomicLong();
+    private Task pending; // FX thread only
+
+    /**
+     * @param onResult receives each result that is still current, on the FX thread
+     */
+    public BackgroundQuery(Consumer<R> onResult) {
+        this.onResult = onResult;
+    }
+
+    /**
+     * Runs the query after the debounce window, unless another one is
+     * submitted first.
+     */
+    public void submit(Supplier<R> query) {
+        schedule(query, DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Runs the query as soon as the background thread is free, e.g. to fill
+     * a screen when it opens.
+     */
+    public void submitNow(Supplier<R> query) {
+        schedule(query, 0);
+    }
+
+    private void schedule(Supplier<R> query, long delayMillis) {
+        long current = generation.incrementAndGet();
+        if (pending != null) {
+            if (pending.claimed.compareAndSet(false, true)) {
+                // still waiting out its debounce window, never ran
+                debounced.increment();
+                pending.future.cancel(false);
+            } else {
+                // already running; its result is dropped once it sees it's stale
+                pending.future.cancel(true);
+            }
+        }
+        Task task = new Task(current, query);
+        task.future = executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        pending = task;
+    }
+
+    private class Task implements Runnable {
+        final long generation;
+        final Supplier<R> query;
+        final AtomicBoolean claimed = new AtomicBoolean();
+        volatile Future<?> future;
+
+        Task(long generation, Supplier<R> query) {
+            this.generation = generation;
+            this.query = query;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            long start = System.nanoTime();
+            R result;
+            try {
+                result = query.get();
+            } catch (CancellationException e) {
+                cancelled.increment();
+                return;
+            } catch (RuntimeException e) {
+                failed.increment();
+                System.err.println("Error running background query: " + e.getMessage());
+                return;
+            }
+            if (isStale()) {
+                cancelled.increment();
+                return;
+            }
+            Platform.runLater(() -> {
+                // a newer query may have been submitted while this one was queued
+                if (isStale()) {
+                    cancelled.increment();
+                    return;
+                }
+                onResult.accept(result);
+                record(System.nanoTime() - start);
+            });
+        }
+
+        private boolean isStale() {
+            return generation != BackgroundQuery.this.generation.get();
+        }
+    }
+
+    private static synchronized void record(long nanos) {
+        latencies[(int) (latencyCount % LATENCY_SAMPLES)] = nanos;
+        latencyCount++;
+        latencyTotal += nanos;
+        latencyMax = Math.max(latencyMax, nanos);
+        completed.increment();
+    }
+
+    /**
+     * Latency runs from the start of the query to the result being applied on
+     * the FX thread; the debounce wait is not included. Percentiles cover the
+     * most recent queries only.
+     *
+     * @return query counts and latencies since startup
+     */
+    public static synchronized String metricsReport() {
+        int samples = (int) Math.min(latencyCount, LATENCY_SAMPLES);
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        return String.format("background queries: %d completed, %d debounced, %d cancelled, %d failed%n"
+                + "latency ms: avg %.2f  p50 %.2f  p99 %.2f  max %.2f%n",
+                completed.sum(), debounced.sum(), cancelled.sum(), failed.sum(),
+                latencyCount == 0 ? 0 : latencyTotal / 1e6 / latencyCount,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, latencyMax / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, (long) (p * sorted.length))];
+    }
+}
@@ -0,0 +1,46 @@
+package controller;
+
+import java.util.Map;
+
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.ListCell;
+
+/**
+ * Shows how many listings each drop-down choice would give, e.g.
+ * "Allston (42)", while the items themselves stay plain values.
+ */
+class FacetCounts {
+
+    private FacetCounts() {}
+
+    /**
+     * @param box the drop-down to label
+     * @param counts count per item; items without a count are shown bare
+     */
+    static void show(ComboBox<String> box, Map<String, Integer> counts) {
+        box.setCellFactory(list -> new CountCell(counts, null));
+        box.setButtonCell(new CountCell(counts, box.getPromptText()));
+    }
+
+    private static class CountCell extends ListCell<String> {
+        private final Map<String, Integer> counts;
+        // shown while nothing is selected; a custom button cell hides the box's own prompt
+        private final String prompt;
+
+        CountCell(Map<String, Integer> counts, String prompt) {
+            this.counts = counts;
+            this.prompt = prompt;
+        }
+
+        @Override
+        protected void updateItem(String item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setText(prompt);
+            } else {
+                Integer count = counts.get(item);
+                setText(count == null ? item : item + " (" + count + ")");
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package controller;
 
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -28,7 +27,7 @@ public class HeaderController {
         
         try {
         	// Load the home view from FXML file
-            Parent homeView = FXMLLoader.load(getClass().getResource("/view/step1.fxml"));
+            Parent homeView = ViewRegistry.root(ViewRegistry.View.STEP1);
             
             // Get the current scene from the home button
             Scene currentScene = homeButton.getScene();
@@ -0,0 +1,256 @@
+package controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Loads listing images without blocking the FX thread.
+ * The view shows a placeholder right away. Decoding happens on a background
+ * thread at the size the view displays, not at full resolution. Decoded
+ * images are kept in a size-bounded LRU cache keyed by a hash of the file
+ * contents, so the same picture under two paths is decoded once.
+ * Optionally, downscaled pixels are also written to an on-disk cache so a
+ * restart doesn't have to decode the originals again.
+ */
+public class ImageService {
+
+    // upper bound on decoded pixels held in memory, in bytes (4 per pixel)
+    private static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+    // set -Dsublet.imageDiskCache=false to turn the on-disk cache off
+    private static final boolean DISK_CACHE_ENABLED =
+            Boolean.parseBoolean(System.getProperty("sublet.imageDiskCache", "true"));
+    private static final Path DISK_CACHE_DIR = Path.of(".image_cache");
+
+    // property on the ImageView recording which image it currently wants
+    private static final String REQUEST_KEY = ImageService.class.getName() + ".request";
+
+    private static final ExecutorService loaders = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "image-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // access-ordered, so iteration starts at the least recently used entry
+    private static final LinkedHashMap<String, Image> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private static long cachedBytes;
+
+    // content hash per source, invalidated when a file's size or timestamp changes
+    private static final Map<String, String> hashes = new HashMap<>();
+
+    private static Image placeholder;
+
+    /**
+     * Shows the image at the given path in the view, scaled to fit within
+     * width x height. Must be called on the FX thread.
+     *
+     * @param view the view to fill
+     * @param imagePath a file path, or a "@../resources/..." style resource path
+     * @param width requested width, or 0 for the image's own
+     * @param height requested height, or 0 for the image's own
+     */
+    public static void load(ImageView view, String imagePath, double width, double height) {
+        URL source = resolve(imagePath);
+        if (source == null) {
+            return;
+        }
+        Object request = new Object();
+        view.getProperties().put(REQUEST_KEY, request);
+        view.setImage(placeholder());
+
+        loaders.execute(() -> {
+            Image image = fetch(source, width, height);
+            if (image == null) {
+                return;
+            }
+            Platform.runLater(() -> {
+                // ignore results for a view that has since asked for another image
+                if (view.getProperties().get(REQUEST_KEY) == request) {
+                    view.setImage(image);
+                }
+            });
+        });
+    }
+
+    // runs on a loader thread
+    private static Image fetch(URL source, double width, double height) {
+        try {
+            String key = contentHash(source) + "@" + (int) width + "x" + (int) height;
+            synchronized (cache) {
+                Image cached = cache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            Image image = DISK_CACHE_ENABLED ? readDiskCache(key) : null;
+            if (image == null) {
+                image = new Image(source.toExternalForm(), width, height, true, true, false);
+                if (image.isError()) {
+                    System.err.println("Error loading image " + source + ": " + image.getException());
+                    return null;
+                }
+                if (DISK_CACHE_ENABLED) {
+                    writeDiskCache(key, image);
+                }
+            }
+            put(key, image);
+            return image;
+        } catch (IOException e) {
+            System.err.println("Error loading image " + source + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void put(String key, Image image) {
+        long bytes = (long) image.getWidth() * (long) image.getHeight() * 4;
+        synchronized (cache) {
+            if (cache.put(key, image) == null) {
+                cachedBytes += bytes;
+            }
+            Iterator<Image> eldest = cache.values().iterator();
+            while (cachedBytes > MAX_CACHE_BYTES && eldest.hasNext()) {
+                Image evicted = eldest.next();
+                if (evicted == image) {
+                    break;
+                }
+                cachedBytes -= (long) evicted.getWidth() * (long) evicted.getHeight() * 4;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static String contentHash(URL source) throws IOException {
+        String version = source.toExternalForm();
+        if ("file".equals(source.getProtocol())) {
+            try {
+                File file = new File(source.toURI());
+                version += "|" + file.length() + "|" + file.lastModified();
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        synchronized (hashes) {
+            String hash = hashes.get(version);
+            if (hash != null) {
+                return hash;
+            }
+        }
+        try (InputStream in = new DigestInputStream(source.openStream(), MessageDigest.getInstance("SHA-256"))) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // digest is updated as the stream is read
+            }
+            String hash = HexFormat.of().formatHex(((DigestInputStream) in).getMessageDigest().digest());
+            synchronized (hashes) {
+                hashes.put(version, hash);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // disk format: width, height, then ARGB pixels
+    private static Image readDiskCache(String key) {
+        Path file = DISK_CACHE_DIR.resolve(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int w = in.readInt();
+            int h = in.readInt();
+            int[] pixels = new int[w * h];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = in.readInt();
+            }
+            WritableImage image = new WritableImage(w, h);
+            image.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), pixels, 0, w);
+            return image;
+        } catch (IOException e) {
+            return null; // fall back to decoding the original
+        }
+    }
+
+    private static void writeDiskCache(String key, Image image) {
+        PixelReader reader = image.getPixelReader();
+        if (reader == null) {
+            return;
+        }
+        int w = (int) image.getWidth();
+        int h = (int) image.getHeight();
+        int[] pixels = new int[w * h];
+        reader.getPixels(0, 0, w, h, PixelFormat.getIntArgbInstance(), pixels, 0, w);
+        try {
+            Files.createDirectories(DISK_CACHE_DIR);
+            Path tmp = Files.createTempFile(DISK_CACHE_DIR, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(w);
+                out.writeInt(h);
+                for (int pixel : pixels) {
+                    out.writeInt(pixel);
+                }
+            }
+            Files.move(tmp, DISK_CACHE_DIR.resolve(key), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Error writing image cache: " + e.getMessage());
+        }
+    }
+
+    private static URL resolve(String imagePath) {
+        if (imagePath == null || imagePath.isEmpty()) {
+            return null;
+        }
+        try {
+            File file = new File(imagePath);
+            if (file.exists()) {
+                return file.toURI().toURL();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        // FXML-style "@../resources/images/x" paths point into the classpath
+        if (imagePath.startsWith("@")) {
+            String resource = imagePath.substring(1).replace("../", "/");
+            return ImageService.class.getResource(resource.startsWith("/") ? resource : "/" + resource);
+        }
+        return null;
+    }
+
+    private static Image placeholder() {
+        if (placeholder == null) {
+            WritableImage image = new WritableImage(1, 1);
+            image.getPixelWriter().setColor(0, 0, Color.gray(0.85));
+            placeholder = image;
+        }
+        return placeholder;
+    }
+}
@@ -4,7 +4,6 @@ package controller;
 import java.io.IOException;
 
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.layout.StackPane;
 
@@ -15,12 +14,12 @@ public class MainController {
 
     @FXML
     public void initialize() {
-        loadStep("/view/step1.fxml");
+        loadStep(ViewRegistry.View.STEP1);
     }
 
-    public void loadStep(String fxmlPath) {
+    public void loadStep(ViewRegistry.View view) {
         try {
-            Parent stepContent = FXMLLoader.load(getClass().getResource(fxmlPath));
+            Parent stepContent = ViewRegistry.root(view);
             rootPane.getChildren().setAll(stepContent);
         } catch (IOException e) {
             e.printStackTrace();
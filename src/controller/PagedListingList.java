@@ -0,0 +1,119 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import model.CatalogSnapshot;
+import model.SubletListing;
+
+/**
+ * Read-only list of listings for a TableView that creates listing objects
+ * one page at a time, only when a row is asked for.
+ * TableView only asks for the rows in its viewport, so memory use is bounded
+ * by the viewport and a few cached pages, not by catalog size. When a page
+ * is read, its neighbours are loaded on a background thread, so scrolling
+ * usually finds the next page ready.
+ *
+ * Being read-only, the list can't be sorted in place, and TableView's
+ * default sort policy fails on it. A table showing it needs a sort policy
+ * that re-runs the query in the requested order and swaps in a new list.
+ *
+ * Must be used from the FX thread.
+ */
+public class PagedListingList extends ObservableListBase<SubletListing> {
+
+    /** Produces the rows in [from, to); may be called off the FX thread. */
+    public interface PageLoader {
+        List<SubletListing> load(int from, int to);
+    }
+
+    private static final int PAGE_SIZE = 128;
+    // pages kept in memory, least recently used dropped first
+    private static final int MAX_PAGES = 16;
+
+    private static final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "page-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int size;
+    private final PageLoader loader;
+    private final Map<Integer, List<SubletListing>> pages = new LinkedHashMap<>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<SubletListing>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> prefetching = new HashSet<>();
+
+    public PagedListingList(int size, PageLoader loader) {
+        this.size = size;
+        this.loader = loader;
+    }
+
+    /**
+     * Pages rows out of one version of the catalog, so every page shows the
+     * listings as they were when the ids were computed.
+     *
+     * @param snapshot the catalog to read rows from
+     * @param ids listing ids in display order, or null for every row in id order
+     */
+    public static PagedListingList of(CatalogSnapshot snapshot, int[] ids) {
+        int size = ids == null ? snapshot.size() : ids.length;
+        return new PagedListingList(size, (from, to) -> {
+            List<SubletListing> rows = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                rows.add(snapshot.get(ids == null ? i : ids[i]));
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public SubletListing get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int page = index / PAGE_SIZE;
+        List<SubletListing> rows = pages.get(page);
+        if (rows == null) {
+            rows = load(page);
+            pages.put(page, rows);
+        }
+        prefetch(page + 1);
+        prefetch(page - 1);
+        return rows.get(index % PAGE_SIZE);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private List<SubletListing> load(int page) {
+        int from = page * PAGE_SIZE;
+        return loader.load(from, Math.min(from + PAGE_SIZE, size));
+    }
+
+    private void prefetch(int page) {
+        if (page < 0 || page * PAGE_SIZE >= size || pages.containsKey(page) || !prefetching.add(page)) {
+            return;
+        }
+        prefetcher.execute(() -> {
+            List<SubletListing> rows = load(page);
+            Platform.runLater(() -> {
+                prefetching.remove(page);
+                pages.putIfAbsent(page, rows);
+            });
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package controller;
+
+import model.ListingQuery;
+
+/**
+ * State that belongs to the user's pass through the app rather than to one
+ * screen, so it survives navigating away from a screen and back.
+ */
+public class Session {
+
+    private static ListingQuery query = ListingQuery.all();
+    private static String username;
+
+    /**
+     * @return the listing search the user set up most recently
+     */
+    public static ListingQuery getQuery() {
+        return query;
+    }
+
+    public static void setQuery(ListingQuery query) {
+        Session.query = query;
+    }
+
+    /**
+     * @return the logged-in user's name, or null before login
+     */
+    public static String getUsername() {
+        return username;
+    }
+
+    public static void setUsername(String username) {
+        Session.username = username;
+    }
+}
@@ -1,11 +1,12 @@
 package controller;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
+import model.CredentialStore;
 
 import java.time.LocalDate;
 
@@ -20,7 +21,7 @@ public class SignupController {
     /**
      * Handles the register button click event.
      * Validates all input fields, ensures email has .edu domain,
-     * and attempts to register the user via LoginController.
+     * and attempts to register the user via the CredentialStore.
      * If successful, redirects to the login screen.
      */
     @FXML
@@ -44,25 +45,24 @@ public class SignupController {
             return;
         }
 
-        // Simulate registration logic
-        LoginController loginController = new LoginController();
-        boolean success = loginController.register(username, password); // You might expand this later to save school/email/date
+        // Register through the shared credential store; hashing runs in the background
+        CredentialStore.register(username, password).thenAcceptAsync(success -> { // You might expand this later to save school/email/date
+            if (success) {
+            	// Show success message and navigate to login screen
+                showAlert(Alert.AlertType.INFORMATION, "User registered successfully!");
 
-        if (success) {
-        	// Show success message and navigate to login screen
-            showAlert(Alert.AlertType.INFORMATION, "User registered successfully!");
-
-            try {
-                Parent root = FXMLLoader.load(getClass().getResource("/view/login.fxml"));
-                Stage stage = (Stage) usernameField.getScene().getWindow();
-                stage.setScene(new Scene(root));
-            } catch (Exception e) {
-                e.printStackTrace();
+                try {
+                    Parent root = ViewRegistry.root(ViewRegistry.View.LOGIN);
+                    Stage stage = (Stage) usernameField.getScene().getWindow();
+                    stage.setScene(new Scene(root));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            } else {
+            	// Show error message if username already exists
+                showAlert(Alert.AlertType.ERROR, "Username already exists.");
             }
-        } else {
-        	// Show error message if username already exists
-            showAlert(Alert.AlertType.ERROR, "Username already exists.");
-        }
+        }, Platform::runLater);
     }
 
     /**
@@ -72,7 +72,7 @@ public class SignupController {
     @FXML
     private void handleBackToLogin() {
         try {
-            Parent root = FXMLLoader.load(getClass().getResource("/view/login.fxml"));
+            Parent root = ViewRegistry.root(ViewRegistry.View.LOGIN);
             Stage stage = (Stage) usernameField.getScene().getWindow();
             stage.setScene(new Scene(root));
         } catch (Exception e) {
@@ -3,7 +3,6 @@ package controller;
 import java.io.IOException;
 
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -22,7 +21,7 @@ public class Step1Controller {
      * @param event The action event triggered by clicking the sublet button
      */
     public void handleSublet(ActionEvent event) {
-        goToNext(event, "/view/step2.fxml");
+        goToNext(event, ViewRegistry.View.STEP2);
     }
 
     /**
@@ -32,20 +31,20 @@ public class Step1Controller {
      * @param event The action event triggered by clicking the roommates button
      */
     public void handleRoommates(ActionEvent event) {
-        goToNext(event, "/view/step2.fxml");
+        goToNext(event, ViewRegistry.View.STEP2);
     }
 
     /**
      * Helper method that handles navigation to the next view.
-     * Loads the specified FXML file and sets it as the root of the current scene.
+     * Loads the specified view and sets it as the root of the current scene.
      * 
      * @param event The action event from the triggering UI element
-     * @param path The resource path to the FXML file to be loaded
+     * @param view The screen to show
      */
-    private void goToNext(ActionEvent event, String path) {
+    private void goToNext(ActionEvent event, ViewRegistry.View view) {
         try {
-        	// Load the next view from the specified FXML file
-            Parent nextView = FXMLLoader.load(getClass().getResource(path));
+        	// Load the next view through the registry
+            Parent nextView = ViewRegistry.root(view);
             
             // Get the current scene from the event source
             Scene currentScene = ((Node) event.getSource()).getScene();
@@ -1,24 +1,25 @@
 package controller;
 
 import java.io.IOException;
-import java.util.stream.Collectors;
+import java.util.Map;
+
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
-import model.SubletStorage;
+import model.ListingFacets;
+import model.ListingQuery;
 
 /**
  * Controller class for the second step of the application flow.
  * Manages location selection and budget range input for filtering sublet listings.
  * Provides validation for user inputs and navigation to previous and next steps.
  */
-public class Step2Controller {
+public class Step2Controller implements ViewRegistry.Resettable {
 
 	@FXML
     private ComboBox<String> locationComboBox;
@@ -37,20 +38,11 @@ public class Step2Controller {
 
     /**
      * Initializes the controller.
-     * Populates the location dropdown with distinct locations from available listings.
      * Sets up input validation for budget fields and hides error labels.
+     * The location dropdown is filled by {@link #reset()} when the screen is shown.
      */
 	@FXML
     public void initialize() {
-		// Populate location dropdown with distinct locations from sublet listings
-        locationComboBox.getItems().addAll(
-            SubletStorage.getListings().stream()
-                .map(listing -> listing.getLocation())
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList())
-        );
-        
         // Hide error message label
     	locationErrorLabel.setVisible(false);
         budgetErrorLabel.setVisible(false);
@@ -69,7 +61,31 @@ public class Step2Controller {
             }
         });
     }
-    
+
+
+    /**
+     * Clears the form each time the registry hands this screen out, and
+     * fills the location dropdown with distinct locations from the
+     * listings, each with its listing count. Reloaded every time, since
+     * listings may have been added meanwhile.
+     */
+    @Override
+    public void reset() {
+        locationComboBox.getItems().clear();
+        locationComboBox.setValue(null);
+        populateLocations();
+        minBudgetField.clear();
+        maxBudgetField.clear();
+        locationErrorLabel.setVisible(false);
+        budgetErrorLabel.setVisible(false);
+    }
+
+    // each location is shown with how many listings it has
+    private void populateLocations() {
+        Map<String, Integer> counts = ListingFacets.locationCounts();
+        locationComboBox.getItems().addAll(counts.keySet());
+        FacetCounts.show(locationComboBox, counts);
+    }
     
 	/**
      * Handles the Next button click event.
@@ -122,8 +138,11 @@ public class Step2Controller {
         
         // If there are no errors, continue to the next step
         if (!hasError) {
+            // Carry the location and budget into the listings screen
+            Session.setQuery(new ListingQuery(selectedLocation,
+                    Integer.parseInt(minBudget), Integer.parseInt(maxBudget)));
             try {
-                Parent nextView = FXMLLoader.load(getClass().getResource("/view/step3.fxml"));
+                Parent nextView = ViewRegistry.root(ViewRegistry.View.STEP3);
                 Scene currentScene = ((Node) event.getSource()).getScene();
                 currentScene.setRoot(nextView);
             } catch (IOException e) {
@@ -140,7 +159,7 @@ public class Step2Controller {
      */
     public void handleBack(ActionEvent event) {
     	try {
-    		Parent prevView = FXMLLoader.load(getClass().getResource("/view/step1.fxml"));
+    		Parent prevView = ViewRegistry.root(ViewRegistry.View.STEP1);
             Scene currentScene = ((Node) event.getSource()).getScene();
             currentScene.setRoot(prevView);
     	} catch (IOException e) {
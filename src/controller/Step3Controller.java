@@ -3,7 +3,6 @@ package controller;
 import java.io.IOException;
 
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -22,7 +21,7 @@ public class Step3Controller {
      * @param event The action event triggered by clicking the Yes button
      */
     public void handleYes(ActionEvent event) {
-        goToNext("/view/step4.fxml", event); // Register your place
+        goToNext(ViewRegistry.View.STEP4, event); // Register your place
     }
 
     /**
@@ -32,7 +31,7 @@ public class Step3Controller {
      * @param event The action event triggered by clicking the No button
      */
     public void handleNo(ActionEvent event) {
-        goToNext("/view/step4_sublet_list.fxml", event); // Sample listings
+        goToNext(ViewRegistry.View.STEP4_SUBLET_LIST, event); // Sample listings
     }
 
     /**
@@ -42,20 +41,20 @@ public class Step3Controller {
      * @param event The action event triggered by clicking the Back button
      */
     public void handleBack(ActionEvent event) {
-    	goToNext("/view/step2.fxml", event); // Back to prevView
+    	goToNext(ViewRegistry.View.STEP2, event); // Back to prevView
     }
 
     /**
      * Helper method that handles navigation to the specified view.
-     * Loads the FXML file and sets it as the root of the current scene.
+     * Loads the view and sets it as the root of the current scene.
      * 
-     * @param path The resource path to the FXML file to be loaded
+     * @param view The screen to show
      * @param event The action event from the triggering UI element
      */
-    private void goToNext(String path, ActionEvent event) {
+    private void goToNext(ViewRegistry.View view, ActionEvent event) {
         try {
-        	// Load the next view from the specified FXML file
-            Parent nextView = FXMLLoader.load(getClass().getResource(path));
+        	// Load the next view through the registry
+            Parent nextView = ViewRegistry.root(view);
             
             // Get the current scene from the event source
             Scene currentScene = ((Node) event.getSource()).getScene();
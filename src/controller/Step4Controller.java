@@ -2,17 +2,21 @@ package controller;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import model.DuplicateDetector;
 import model.SubletListing;
 import model.SubletStorage;
 
@@ -22,6 +26,7 @@ import model.SubletStorage;
  * - Title, description, and image upload
  * - Number of roommates and duration fields
  * - Validation of all input fields
+ * - A warning when the listing looks like one that already exists
  * - Navigation to preview screen or back to previous step
  */
 public class Step4Controller {
@@ -59,6 +64,9 @@ public class Step4Controller {
                 roommatesField.setText(newValue.replaceAll("[^\\d]", ""));
             }
         });
+
+        // Build the duplicate index while the user fills in the form
+        CompletableFuture.runAsync(DuplicateDetector::load);
     }
     
     /**
@@ -153,17 +161,21 @@ public class Step4Controller {
         	double price = 0.0;
         	String subletMode = "short";
 
+        	if (!confirmNotDuplicate(title, description, image)) {
+        		return;
+        	}
+
         	// Create and store the new listing
         	SubletListing newListing = new SubletListing(title, location, price, description, subletMode, image);
         	SubletStorage.addListing(newListing);
         
         try {
         	// Load the preview view and pass the listing data to its controller
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/step5_preview.fxml"));
-            Parent previewView = loader.load();
+            ViewRegistry.Loaded<Step5PreviewController> loaded = ViewRegistry.load(ViewRegistry.View.STEP5_PREVIEW);
+            Parent previewView = loaded.getRoot();
 
             // Get controller and set data
-            Step5PreviewController controller = loader.getController();
+            Step5PreviewController controller = loaded.getController();
             controller.setData(
                 titleField.getText(),
                 descArea.getText(),
@@ -180,6 +192,26 @@ public class Step4Controller {
     }
     }
 
+    /**
+     * Warns the user when the listing looks like one that is already posted.
+     *
+     * @return true if there is no likely duplicate or the user chose to post anyway
+     */
+    private boolean confirmNotDuplicate(String title, String description, String image) {
+        List<SubletListing> duplicates = DuplicateDetector.findDuplicates(title, description, image);
+        if (duplicates.isEmpty()) {
+            return true;
+        }
+        StringBuilder message = new StringBuilder("This looks like a listing that is already posted:\n");
+        for (SubletListing duplicate : duplicates) {
+            message.append("\n- ").append(duplicate.getTitle()).append(" (").append(duplicate.getLocation()).append(")");
+        }
+        message.append("\n\nDo you want to post it anyway?");
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, message.toString(), ButtonType.YES, ButtonType.NO);
+        confirm.setHeaderText("Possible duplicate listing");
+        return confirm.showAndWait().filter(response -> response == ButtonType.YES).isPresent();
+    }
+
     /**
      * Handles the Back button click event.
      * Navigates back to the previous step (step3.fxml).
@@ -188,7 +220,7 @@ public class Step4Controller {
      */
     public void handleBack(ActionEvent event) {
     	try {
-    		Parent prevView = FXMLLoader.load(getClass().getResource("/view/step3.fxml"));
+    		Parent prevView = ViewRegistry.root(ViewRegistry.View.STEP3);
     		Scene currentScene = ((Node) event.getSource()).getScene();
     		currentScene.setRoot(prevView);
     	} catch (IOException e) {
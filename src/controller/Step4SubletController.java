@@ -1,11 +1,13 @@
 package controller;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
-import javafx.collections.transformation.FilteredList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -18,6 +20,12 @@ import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
+import model.ListingFacets;
+import model.ListingQuery;
+import model.ListingSort;
+import model.Places;
+import model.SavedSearches;
+import model.SubletClickTracker;
 import model.SubletListing;
 import model.SubletStorage;
 
@@ -26,7 +34,12 @@ import model.SubletStorage;
  * Manages the interactive table view of listings, filtering functionality,
  * and navigation to detail and application pages.
  */
-public class Step4SubletController {
+public class Step4SubletController implements ViewRegistry.Resettable {
+
+    // most search results shown at once
+    private static final int SEARCH_LIMIT = 500;
+    private static final String ANY_CAMPUS = "Any campus";
+    private static final double DEFAULT_RADIUS_KM = 1.5;
 
     @FXML private TableView<SubletListing> tableView;
     @FXML private TableColumn<SubletListing, String> titleColumn;
@@ -34,15 +47,40 @@ public class Step4SubletController {
     @FXML private TableColumn<SubletListing, Double> priceColumn;
     @FXML private TableColumn<SubletListing, String> descriptionColumn;
     @FXML private ComboBox<String> locationFilter;
+    @FXML private ComboBox<String> modeFilter;
+    @FXML private ComboBox<String> campusFilter;
+    @FXML private TextField radiusFilter;
+    @FXML private TextField minPriceFilter;
     @FXML private TextField priceFilter;
+    @FXML private TextField searchField;
     @FXML private TableColumn<SubletListing, Void> detailsColumn;
+    @FXML private Button matchesButton;
+
+    // filters run on a background thread; only the latest result reaches the table
+    private final BackgroundQuery<FilterResult> filterQuery = new BackgroundQuery<>(this::showResult);
+    private final Map<TableColumn<SubletListing, ?>, ListingSort> sortKeys = new HashMap<>();
+    // column sort of the last submitted filter, so re-sorting the same way is a no-op
+    private String requestedSort = "";
+    // set while reset() fills in the filters, so each change doesn't start a query
+    private boolean restoring;
+
+    /** Rows for the table plus the counts shown in the drop-downs, or null to keep them. */
+    private static class FilterResult {
+        final PagedListingList rows;
+        final Map<String, Integer> locationCounts;
+        final Map<String, Integer> modeCounts;
 
-    // set up filteredlist from subletlisting
-    private FilteredList<SubletListing> filteredList;
+        FilterResult(PagedListingList rows, Map<String, Integer> locationCounts, Map<String, Integer> modeCounts) {
+            this.rows = rows;
+            this.locationCounts = locationCounts;
+            this.modeCounts = modeCounts;
+        }
+    }
 
     /**
      * Initializes the controller.
-     * Sets up table columns, initializes filters, and adds action listeners.
+     * Sets up table columns, the campus choices and the filter listeners.
+     * The listings are loaded by {@link #reset()} when the screen is shown.
      */
     @FXML
     public void initialize() {
@@ -52,29 +90,90 @@ public class Step4SubletController {
         priceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
         descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
 
+        // header clicks pick one of the catalog's precomputed orders instead of sorting the rows
+        sortKeys.put(titleColumn, ListingSort.TITLE);
+        sortKeys.put(locationColumn, ListingSort.LOCATION_PRICE);
+        sortKeys.put(priceColumn, ListingSort.PRICE);
+        descriptionColumn.setSortable(false);
+        detailsColumn.setSortable(false);
 
-        // Create filtered list from all available listings
-        filteredList = new FilteredList<>(SubletStorage.getListings(), p -> true);
-        tableView.setItems(filteredList);
+        // Distance filter: listings within a radius of the chosen campus
+        campusFilter.getItems().add(ANY_CAMPUS);
+        for (Places.Campus campus : Places.Campus.values()) {
+            campusFilter.getItems().add(campus.getDisplayName());
+        }
 
-        // Set up location filter dropdown
-        locationFilter.getItems().add("All");
-        //collections data pipeline - filtering with stream
-        SubletStorage.getListings().stream()
-            .map(SubletListing::getLocation)
-            .distinct()
-            .forEach(locationFilter.getItems()::add);
-        
-        // Add event handlers for filter controls
-        locationFilter.setValue("All");
+        // the rows are read-only, so a header click re-runs the query in the column's order
+        tableView.setSortPolicy(table -> {
+            if (!restoring && !sortKey().equals(requestedSort)) {
+                filterQuery.submitNow(currentFilter());
+            }
+            return true;
+        });
         
-        //eventlistener for filter events
-        locationFilter.setOnAction(e -> applyFilters());
-        priceFilter.textProperty().addListener((obs, oldVal, newVal) -> applyFilters());
+        //eventlistener for filter events; typing is debounced
+        locationFilter.setOnAction(e -> filterChanged(false));
+        modeFilter.setOnAction(e -> filterChanged(false));
+        campusFilter.setOnAction(e -> filterChanged(false));
+        radiusFilter.textProperty().addListener((obs, oldVal, newVal) -> filterChanged(true));
+        minPriceFilter.textProperty().addListener((obs, oldVal, newVal) -> filterChanged(true));
+        priceFilter.textProperty().addListener((obs, oldVal, newVal) -> filterChanged(true));
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> filterChanged(true));
 
         // Add interactive details buttons to each row
         addDetailsButtonToTable(); 
     }
+
+    /**
+     * Fills the screen each time it is shown: the filters the user set up
+     * earlier in the wizard, their choices with current counts, and the
+     * matching listings.
+     */
+    @Override
+    public void reset() {
+        restoring = true;
+        try {
+            // Set up location and sublet type filter dropdowns
+            locationFilter.getItems().setAll("All");
+            locationFilter.getItems().addAll(ListingFacets.locations());
+            modeFilter.getItems().setAll("All");
+            modeFilter.getItems().addAll(ListingFacets.modes());
+
+            // Start from the search the user set up earlier in the wizard
+            ListingQuery query = Session.getQuery();
+            locationFilter.setValue(locationFilter.getItems().contains(query.getLocation())
+                    ? query.getLocation() : "All");
+            modeFilter.setValue(modeFilter.getItems().contains(query.getMode())
+                    ? query.getMode() : "All");
+            Places.Campus campus = query.hasRadius() ? campusAt(query.getLatitude(), query.getLongitude()) : null;
+            campusFilter.setValue(campus == null ? ANY_CAMPUS : campus.getDisplayName());
+            radiusFilter.setText(formatPrice(campus == null ? DEFAULT_RADIUS_KM : query.getRadiusKm()));
+            minPriceFilter.setText(query.getMinPrice() > 0 ? formatPrice(query.getMinPrice()) : "");
+            priceFilter.setText(query.getMaxPrice() != Double.MAX_VALUE ? formatPrice(query.getMaxPrice()) : "");
+            searchField.clear();
+            tableView.getSortOrder().clear();
+            tableView.getSelectionModel().clearSelection();
+        } finally {
+            restoring = false;
+        }
+        filterQuery.submitNow(currentFilter());
+
+        // New listings matching the user's saved searches
+        matchesButton.setText(Session.getUsername() == null ? "Matches"
+                : "Matches (" + SavedSearches.inbox(Session.getUsername()).size() + ")");
+    }
+
+    // a filter edit by the user; ignored while reset() restores the filters
+    private void filterChanged(boolean typed) {
+        if (restoring) {
+            return;
+        }
+        if (typed) {
+            filterQuery.submit(currentFilter());
+        } else {
+            filterQuery.submitNow(currentFilter());
+        }
+    }
     
     /**
      * Handles the Apply button click event.
@@ -95,11 +194,11 @@ public class Step4SubletController {
 
         try {
         	//applyview load and data loaded to controller
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/ApplyView.fxml"));
-            Parent applyPage = loader.load();
+            ViewRegistry.Loaded<ApplyController> loaded = ViewRegistry.load(ViewRegistry.View.APPLY);
+            Parent applyPage = loaded.getRoot();
 
             // Pass the selected listing to the controller
-            ApplyController controller = loader.getController();
+            ApplyController controller = loaded.getController();
             controller.setData(selected);
 
             // Navigate to the application form
@@ -110,6 +209,45 @@ public class Step4SubletController {
         }
     }
 
+    /**
+     * Handles the Save Search button click event.
+     * Saves the current filters, so new listings that match them show up
+     * under Matches.
+     */
+    @FXML
+    private void handleSaveSearch() {
+        String username = Session.getUsername();
+        if (username == null) {
+            Alert alert = new Alert(Alert.AlertType.WARNING, "Please log in to save searches.");
+            alert.showAndWait();
+            return;
+        }
+        SavedSearches.save(username, Session.getQuery());
+        Alert alert = new Alert(Alert.AlertType.INFORMATION,
+                "Search saved. New listings that match it will show up under Matches.");
+        alert.showAndWait();
+    }
+
+    /**
+     * Handles the Matches button click event.
+     * Shows the listings that matched the user's saved searches, newest first.
+     * Changing any filter goes back to the normal results.
+     */
+    @FXML
+    private void handleShowMatches() {
+        String username = Session.getUsername();
+        if (username == null) {
+            return;
+        }
+        List<SavedSearches.Match> matches = SavedSearches.inbox(username);
+        matchesButton.setText("Matches (" + matches.size() + ")");
+        int[] ids = new int[matches.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = matches.get(i).getListingId();
+        }
+        filterQuery.submitNow(() -> new FilterResult(PagedListingList.of(SubletStorage.snapshot(), ids), null, null));
+    }
+
     /**
      * Handles the Back button click event.
      * Navigates back to the previous step (step3.fxml).
@@ -118,7 +256,7 @@ public class Step4SubletController {
      */
     public void handleBack(ActionEvent event) {
         try {
-            Parent prevView = FXMLLoader.load(getClass().getResource("/view/step3.fxml"));
+            Parent prevView = ViewRegistry.root(ViewRegistry.View.STEP3);
             Scene currentScene = ((Node) event.getSource()).getScene();
             currentScene.setRoot(prevView);
         } catch (IOException e) {
@@ -127,31 +265,120 @@ public class Step4SubletController {
     }
     
     /**
-     * Applies the selected filters to the listing table.
-     * Filters listings based on selected location and maximum price.
+     * Reads the selected filters and returns the lookup that applies them.
+     * Listings are looked up by location and price range through the storage
+     * indexes, so only the matching listings are touched. With search text,
+     * results come from the full-text index, best match first. The table only
+     * receives ids; listing objects are made for visible pages. With a campus
+     * chosen, only listings within the radius are kept, nearest first. A
+     * sorted column puts the ids in that column's precomputed order. The
+     * lookup also counts, per drop-down choice, how many listings it would give.
+     *
+     * Call on the FX thread; the returned lookup runs on any thread.
      */
-    private void applyFilters() {
-        String selectedLocation = locationFilter.getValue();
-        String maxPriceText = priceFilter.getText();
-        double maxPrice = Double.MAX_VALUE;
+    private Supplier<FilterResult> currentFilter() {
+        String searchText = searchField.getText();
+        String location = choice(locationFilter);
+        String mode = choice(modeFilter);
+        double minPrice = parsePrice(minPriceFilter.getText(), 0);
+        double maxPrice = parsePrice(priceFilter.getText(), Double.MAX_VALUE);
 
-        // Parse maximum price if provided
-        try {
-            if (!maxPriceText.isEmpty()) {
-                maxPrice = Double.parseDouble(maxPriceText);
+        ListingQuery query = new ListingQuery(location, mode, minPrice, maxPrice);
+        Places.Campus campus = Places.Campus.byDisplayName(campusFilter.getValue());
+        if (campus != null) {
+            query = query.within(campus.getLatitude(), campus.getLongitude(),
+                    parsePrice(radiusFilter.getText(), DEFAULT_RADIUS_KM));
+        }
+        ListingQuery filter = query;
+
+        TableColumn<SubletListing, ?> sortColumn = tableView.getSortOrder().isEmpty()
+                ? null : tableView.getSortOrder().get(0);
+        ListingSort sort = sortColumn == null ? null : sortKeys.get(sortColumn);
+        boolean descending = sortColumn != null && sortColumn.getSortType() == TableColumn.SortType.DESCENDING;
+        requestedSort = sortKey();
+
+        // remember the filters for when the user comes back to this screen
+        Session.setQuery(filter);
+
+        return () -> {
+            // rows are created page by page as the table scrolls, not all up front
+            int[] ids;
+            if (searchText != null && !searchText.isBlank()) {
+                ids = SubletStorage.searchIds(searchText, filter, SEARCH_LIMIT);
+            } else if (filter.isAll()) {
+                ids = null; // the whole catalog in its original order
+            } else {
+                ids = SubletStorage.queryIds(filter);
             }
-        } catch (NumberFormatException e) {
-            maxPrice = Double.MAX_VALUE;
+            if (sort != null) {
+                ids = SubletStorage.sortedIds(sort, descending, ids);
+            }
+            PagedListingList rows = PagedListingList.of(SubletStorage.snapshot(), ids);
+
+            // "All" counts what the other filters leave, whatever this drop-down says
+            Map<String, Integer> locationCounts = new HashMap<>(ListingFacets.locationCounts(filter));
+            locationCounts.put("All", ListingFacets.count(withLocation(filter, null)));
+            Map<String, Integer> modeCounts = new HashMap<>(ListingFacets.modeCounts(filter));
+            modeCounts.put("All", ListingFacets.count(withMode(filter, null)));
+            return new FilterResult(rows, locationCounts, modeCounts);
+        };
+    }
+
+    private void showResult(FilterResult result) {
+        tableView.setItems(result.rows);
+        if (result.locationCounts != null) {
+            FacetCounts.show(locationFilter, result.locationCounts);
+            FacetCounts.show(modeFilter, result.modeCounts);
         }
+    }
 
-        double finalMaxPrice = maxPrice;
+    // the primary sort column and direction, or "" if the table isn't sorted
+    private String sortKey() {
+        if (tableView.getSortOrder().isEmpty()) {
+            return "";
+        }
+        TableColumn<SubletListing, ?> column = tableView.getSortOrder().get(0);
+        return column.getText() + " " + column.getSortType();
+    }
 
-        // Update the predicate to filter listings
-        filteredList.setPredicate(listing -> {
-            boolean locationMatch = selectedLocation.equals("All") || listing.getLocation().equals(selectedLocation);
-            boolean priceMatch = listing.getPrice() <= finalMaxPrice;
-            return locationMatch && priceMatch;
-        });
+    // the query with another location; mode and distance limit are kept
+    private static ListingQuery withLocation(ListingQuery query, String location) {
+        return withDistance(new ListingQuery(location, query.getMode(), query.getMinPrice(), query.getMaxPrice()), query);
+    }
+
+    private static ListingQuery withMode(ListingQuery query, String mode) {
+        return withDistance(new ListingQuery(query.getLocation(), mode, query.getMinPrice(), query.getMaxPrice()), query);
+    }
+
+    private static ListingQuery withDistance(ListingQuery query, ListingQuery from) {
+        return from.hasRadius() ? query.within(from.getLatitude(), from.getLongitude(), from.getRadiusKm()) : query;
+    }
+
+    private static Places.Campus campusAt(double latitude, double longitude) {
+        for (Places.Campus campus : Places.Campus.values()) {
+            if (campus.getLatitude() == latitude && campus.getLongitude() == longitude) {
+                return campus;
+            }
+        }
+        return null;
+    }
+
+    // the selected value, or null for "All"
+    private static String choice(ComboBox<String> filter) {
+        String value = filter.getValue();
+        return value == null || value.equals("All") ? null : value;
+    }
+
+    private static double parsePrice(String text, double fallback) {
+        try {
+            return text == null || text.isEmpty() ? fallback : Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static String formatPrice(double price) {
+        return price == Math.rint(price) ? String.valueOf((long) price) : String.valueOf(price);
     }
     
     /**
@@ -190,13 +417,16 @@ public class Step4SubletController {
      * @param listing The SubletListing to display details for
      */
     private void openDetailPage(SubletListing listing) {
+        // Count the view for the admin "popular sublets" chart
+        SubletClickTracker.registerClick(listing);
+
         try {
         	// Load the detail view
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/sublet_detail.fxml"));
-            Parent detailView = loader.load();
+            ViewRegistry.Loaded<SubletDetailController> loaded = ViewRegistry.load(ViewRegistry.View.SUBLET_DETAIL);
+            Parent detailView = loaded.getRoot();
 
             // Pass the listing to the detail controller
-            SubletDetailController controller = loader.getController();
+            SubletDetailController controller = loaded.getController();
             controller.setData(listing);
 
             // Navigate to the detail view
@@ -4,12 +4,10 @@ import java.io.IOException;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import model.SubletListing;
 
@@ -34,7 +32,7 @@ public class Step5PreviewController {
     public void handleGoToSubletList(ActionEvent event) {
         try {
         	// Load the sublet list view
-            Parent listView = FXMLLoader.load(getClass().getResource("/view/step4_sublet_list.fxml"));
+            Parent listView = ViewRegistry.root(ViewRegistry.View.STEP4_SUBLET_LIST);
             
             // Get the current scene and replace its root
             Scene scene = ((Node) event.getSource()).getScene();
@@ -56,10 +54,8 @@ public class Step5PreviewController {
         titleLabel.setText("Title: " + title);
         descLabel.setText("Description: " + desc);
         
-        // Load and display the image if a path is provided
-        if (imagePath != null) {
-            uploadedImage.setImage(new Image("file:" + imagePath));
-        }
+        // Load and display the image in the background if a path is provided
+        ImageService.load(uploadedImage, imagePath, uploadedImage.getFitWidth(), uploadedImage.getFitHeight());
     }
 
     /**
@@ -71,7 +67,7 @@ public class Step5PreviewController {
     public void handleBack(ActionEvent event) {
         try {
         	// Load the previous view (form)
-            Parent prevView = FXMLLoader.load(getClass().getResource("/view/step4.fxml"));
+            Parent prevView = ViewRegistry.root(ViewRegistry.View.STEP4);
             
             // Get the current scene and replace its root
             Scene currentScene = ((Node) event.getSource()).getScene();
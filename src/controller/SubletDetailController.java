@@ -2,15 +2,12 @@ package controller;
 
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.stage.Stage;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
-import javafx.fxml.FXMLLoader;
 import model.SubletListing;
 
-import java.io.File;
 import java.io.IOException;
 
 public class SubletDetailController {
@@ -29,20 +26,14 @@ public class SubletDetailController {
         priceLabel.setText("Price: $" + listing.getPrice());
         modeLabel.setText("Sublet type: " + listing.getSubletMode());
 
-        String imagePath = listing.getImagePath();
-        if (imagePath != null && !imagePath.isEmpty()) {
-            File file = new File(imagePath);
-            if (file.exists()) {
-                imageView.setImage(new Image(file.toURI().toString()));
-            }
-        }
+        // Decoded in the background at display size; cached across visits
+        ImageService.load(imageView, listing.getImagePath(), imageView.getFitWidth(), imageView.getFitHeight());
     }
 
     @FXML
     public void handleBack() {
         try {
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("/view/step4_sublet_list.fxml"));
-            Parent root = loader.load();
+            Parent root = ViewRegistry.root(ViewRegistry.View.STEP4_SUBLET_LIST);
             Stage stage = (Stage) titleLabel.getScene().getWindow();
             stage.setScene(new Scene(root));
         } catch (IOException e) {
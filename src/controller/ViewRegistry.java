@@ -0,0 +1,249 @@
+package controller;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Group;
+import javafx.scene.Parent;
+import javafx.scene.layout.Pane;
+import model.StartupTimeline;
+
+/**
+ * Central registry of every screen in the app.
+ * All navigation goes through {@link #load(View)}, which:
+ * - hands out a cached instance for reusable screens instead of parsing the
+ *   FXML again
+ * - calls {@link Resettable#reset()} on the controller every time it hands
+ *   a screen out, so that is where a screen loads its data
+ * - after each navigation, warms up the reusable screens the user is likely
+ *   to open next on a background thread. A warm-up parses the screen and
+ *   keeps it in the cache, but doesn't reset it. A reusable screen's
+ *   initialize() only builds the UI, so warming it loads no data; the FX
+ *   thread later only runs reset(). Other screens aren't warmed.
+ * - records how long every load took, per view
+ */
+public class ViewRegistry {
+
+    /** Every screen, with the screens usually opened next from it. */
+    public enum View {
+        LOGIN("/view/login.fxml", false),
+        SIGNUP("/view/signup.fxml", false),
+        MAIN("/view/main_view.fxml", false),
+        STEP1("/view/step1.fxml", true),
+        STEP2("/view/step2.fxml", true),
+        STEP3("/view/step3.fxml", true),
+        STEP4("/view/step4.fxml", false),
+        STEP4_SUBLET_LIST("/view/step4_sublet_list.fxml", true),
+        STEP5_PREVIEW("/view/step5_preview.fxml", false),
+        SUBLET_DETAIL("/view/sublet_detail.fxml", false),
+        APPLY("/view/ApplyView.fxml", false),
+        APPLICATION_STATUS("/view/application_status.fxml", false),
+        ADMIN_DASHBOARD("/view/admin_dashboard.fxml", true);
+
+        private final String path;
+        private final boolean reusable;
+        private View[] next = new View[0];
+
+        View(String path, boolean reusable) {
+            this.path = path;
+            this.reusable = reusable;
+        }
+
+        public String getPath() { return path; }
+
+        static {
+            LOGIN.next = new View[] { MAIN, ADMIN_DASHBOARD, SIGNUP };
+            SIGNUP.next = new View[] { LOGIN };
+            MAIN.next = new View[] { STEP1 };
+            STEP1.next = new View[] { STEP2 };
+            STEP2.next = new View[] { STEP3 };
+            STEP3.next = new View[] { STEP4_SUBLET_LIST, STEP4 };
+            STEP4.next = new View[] { STEP5_PREVIEW };
+            STEP4_SUBLET_LIST.next = new View[] { SUBLET_DETAIL, APPLY };
+            STEP5_PREVIEW.next = new View[] { STEP4_SUBLET_LIST };
+            SUBLET_DETAIL.next = new View[] { STEP4_SUBLET_LIST };
+            APPLY.next = new View[] { APPLICATION_STATUS };
+            ADMIN_DASHBOARD.next = new View[] { MAIN, LOGIN };
+        }
+    }
+
+    /**
+     * Implemented by controllers of reusable screens, which are handed out
+     * again instead of being rebuilt. reset() is called each time the screen
+     * is handed out, the first time included but never for a warm-up. It
+     * clears what the last visit left and loads the screen's data, which
+     * must therefore stay out of initialize().
+     */
+    public interface Resettable {
+        void reset();
+    }
+
+    /** A loaded screen and its controller. */
+    public static class Loaded<C> {
+        private final Parent root;
+        private final C controller;
+
+        Loaded(Parent root, C controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+
+        public Parent getRoot() { return root; }
+        public C getController() { return controller; }
+    }
+
+    private static class Metrics {
+        final LongAdder loads = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        volatile long maxNanos;
+    }
+
+    private static final Map<View, Loaded<?>> cached = new ConcurrentHashMap<>();
+    private static final Set<View> warmed = ConcurrentHashMap.newKeySet();
+    // views requested while warm-up is paused, submitted on resume
+    private static final Set<View> deferred = ConcurrentHashMap.newKeySet();
+    private static volatile boolean paused;
+    private static final Map<View, Metrics> metrics = new EnumMap<>(View.class);
+
+    private static final ExecutorService warmer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "view-warmup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        for (View view : View.values()) {
+            metrics.put(view, new Metrics());
+        }
+        if (Boolean.getBoolean("sublet.viewMetrics")) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(metricsReport())));
+        }
+    }
+
+    /**
+     * Returns the screen's root node and controller, ready to be shown.
+     * Call on the FX thread.
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> Loaded<C> load(View view) throws IOException {
+        long start = System.nanoTime();
+        Loaded<C> loaded = (Loaded<C>) cached.get(view);
+        if (loaded != null) {
+            detach(loaded.getRoot());
+            metrics.get(view).cacheHits.increment();
+        } else {
+            loaded = parse(view);
+            if (view.reusable) {
+                cached.put(view, loaded);
+            }
+        }
+        if (loaded.getController() instanceof Resettable) {
+            ((Resettable) loaded.getController()).reset();
+        }
+        record(view, System.nanoTime() - start);
+        warmUp(view.next);
+        return loaded;
+    }
+
+    /**
+     * Shortcut for screens whose controller the caller doesn't need.
+     */
+    public static Parent root(View view) throws IOException {
+        return load(view).getRoot();
+    }
+
+    /**
+     * Parses the given reusable screens on a background thread, each at most
+     * once, and keeps them. Other screens are skipped.
+     */
+    public static void warmUp(View... views) {
+        for (View view : views) {
+            if (!view.reusable) {
+                continue;
+            }
+            if (paused) {
+                deferred.add(view);
+                continue;
+            }
+            if (!warmed.add(view)) {
+                continue;
+            }
+            warmer.execute(() -> {
+                try {
+                    cached.putIfAbsent(view, parse(view));
+                } catch (IOException | RuntimeException e) {
+                    // not fatal: the screen is parsed again when it is opened
+                    System.err.println("Error warming up " + view.getPath() + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Holds back warm-ups so they don't compete with the first frame for CPU.
+     */
+    public static void pauseWarmUp() {
+        paused = true;
+    }
+
+    /**
+     * Starts every warm-up requested since {@link #pauseWarmUp()}.
+     */
+    public static void resumeWarmUp() {
+        paused = false;
+        View[] views = deferred.toArray(new View[0]);
+        deferred.clear();
+        warmUp(views);
+    }
+
+    /**
+     * @return per-view load counts and timings, one line per view that was opened
+     */
+    public static String metricsReport() {
+        StringBuilder report = new StringBuilder("view                 loads  cached  avg ms  max ms\n");
+        for (Map.Entry<View, Metrics> entry : metrics.entrySet()) {
+            Metrics m = entry.getValue();
+            long loads = m.loads.sum();
+            if (loads == 0) {
+                continue;
+            }
+            report.append(String.format("%-20s %5d  %6d  %6.2f  %6.2f%n", entry.getKey(), loads,
+                    m.cacheHits.sum(), m.totalNanos.sum() / 1e6 / loads, m.maxNanos / 1e6));
+        }
+        return report.toString();
+    }
+
+    private static <C> Loaded<C> parse(View view) throws IOException {
+        long start = StartupTimeline.start();
+        FXMLLoader loader = new FXMLLoader(ViewRegistry.class.getResource(view.path));
+        Parent root = loader.load();
+        StartupTimeline.span("parse " + view.path, start);
+        return new Loaded<>(root, loader.getController());
+    }
+
+    private static void record(View view, long nanos) {
+        Metrics m = metrics.get(view);
+        m.loads.increment();
+        m.totalNanos.add(nanos);
+        if (nanos > m.maxNanos) {
+            m.maxNanos = nanos;
+        }
+    }
+
+    // a cached root may still hang off the screen it was last shown in
+    private static void detach(Parent root) {
+        if (root.getParent() instanceof Pane) {
+            ((Pane) root.getParent()).getChildren().remove(root);
+        } else if (root.getScene() != null && root.getScene().getRoot() == root) {
+            root.getScene().setRoot(new Group());
+        }
+    }
+}
@@ -1,23 +1,41 @@
 package main;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import controller.ViewRegistry;
+import model.StartupTimeline;
 
 public class MainApp extends Application {
 
     @Override
     public void start(Stage primaryStage) throws Exception {
-        Parent root = FXMLLoader.load(getClass().getResource("/view/login.fxml"));
+        StartupTimeline.mark("FX application start");
+        // keep screen warm-up off the CPU until the login screen is up
+        ViewRegistry.pauseWarmUp();
+        Parent root = ViewRegistry.root(ViewRegistry.View.LOGIN);
         primaryStage.setTitle("College Sublet App");
         primaryStage.setScene(new Scene(root, 600, 800));
-        
+
         primaryStage.show();
+        StartupTimeline.mark("login stage shown");
+
+        // runs on the first pulse after show, which renders the first frame
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                StartupTimeline.mark("login first frame");
+                StartupTimeline.writeReport();
+                ViewRegistry.resumeWarmUp();
+            }
+        }.start();
     }
 
     public static void main(String[] args) {
+        StartupTimeline.mark("main");
         launch(args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Write-ahead log behind ApplicationQueue.
+ * Every enqueue is logged with its sequence number before it becomes visible,
+ * and every batch dequeue logs one acknowledgement carrying the highest
+ * sequence number it removed. Because the queue is FIFO, that single
+ * watermark acknowledges everything before it, so recovery only replays
+ * enqueues above the last watermark. The enqueues below it are read back as
+ * the processed history.
+ */
+class ApplicationLog {
+
+    static final String LOG_FILE = "applications.log";
+
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+
+    /** An application read back from the log together with its sequence number. */
+    static final class Record {
+        final long seq;
+        final AppliedApplication application;
+
+        Record(long seq, AppliedApplication application) {
+            this.seq = seq;
+            this.application = application;
+        }
+    }
+
+    private final Path logPath;
+    private FileChannel channel;
+    private long records;
+    private long lastSeq = -1;
+    private boolean created;
+    private List<Record> processed = Collections.emptyList();
+
+    ApplicationLog(Path directory) {
+        this.logPath = directory.resolve(LOG_FILE);
+    }
+
+    /**
+     * Opens the log and returns the un-acknowledged tail, in enqueue order.
+     * The acknowledged records are kept for {@link #processed()}.
+     * A torn record at the end of the log is cut off.
+     */
+    List<Record> recover() throws IOException {
+        created = !Files.exists(logPath);
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        List<Record> enqueued = new ArrayList<>();
+        long acked = -1;
+        long validEnd = 0;
+        if (channel.size() > 0) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer in;
+            while ((in = RecordFile.read(buffer)) != null) {
+                byte type = in.get();
+                long seq = in.getLong();
+                lastSeq = Math.max(lastSeq, seq);
+                if (type == ENQUEUE) {
+                    String name = RecordFile.getString(in);
+                    String email = RecordFile.getString(in);
+                    SubletListing listing = SubletStorage.getListing(in.getInt());
+                    if (listing != null) {
+                        enqueued.add(new Record(seq, new AppliedApplication(name, email, listing)));
+                    } else {
+                        System.err.println("Skipping application " + seq + " for a listing that no longer exists");
+                    }
+                } else if (type == ACK) {
+                    acked = Math.max(acked, seq);
+                }
+                validEnd = buffer.position();
+                records++;
+            }
+        }
+        if (validEnd < channel.size()) {
+            System.err.println("Dropping " + (channel.size() - validEnd) + " bytes of incomplete application log");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+
+        // enqueues are logged in sequence order, so the tail starts after the watermark
+        int firstPending = 0;
+        while (firstPending < enqueued.size() && enqueued.get(firstPending).seq <= acked) {
+            firstPending++;
+        }
+        processed = new ArrayList<>(enqueued.subList(0, firstPending));
+        return new ArrayList<>(enqueued.subList(firstPending, enqueued.size()));
+    }
+
+    void logEnqueue(long seq, AppliedApplication app) throws IOException {
+        append(encodeEnqueue(seq, app));
+    }
+
+    void logAck(long seq) throws IOException {
+        append(encodeAck(seq));
+    }
+
+    /**
+     * @return true if {@link #recover()} had to create the log file
+     */
+    boolean isNew() {
+        return created;
+    }
+
+    /**
+     * @return the acknowledged applications found during recovery, oldest first
+     */
+    List<Record> processed() {
+        return processed;
+    }
+
+    /**
+     * @return highest sequence number found during recovery, or -1
+     */
+    long lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Number of records in the log, acknowledged or not.
+     */
+    synchronized long records() {
+        return records;
+    }
+
+    /**
+     * Replaces the log with just the given applications: the processed ones
+     * still worth keeping, an acknowledgement covering them, and the pending
+     * ones. Every other acknowledged record is dropped.
+     */
+    synchronized void rewrite(List<Record> processed, List<Record> pending) throws IOException {
+        Path tmp = logPath.resolveSibling(LOG_FILE + ".tmp");
+        List<byte[]> payloads = new ArrayList<>(processed.size() + 1 + pending.size());
+        for (Record record : processed) {
+            payloads.add(encodeEnqueue(record.seq, record.application));
+        }
+        if (!processed.isEmpty()) {
+            payloads.add(encodeAck(processed.get(processed.size() - 1).seq));
+        }
+        for (Record record : pending) {
+            payloads.add(encodeEnqueue(record.seq, record.application));
+        }
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordFile.writeFully(out, RecordFile.frame(payloads));
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        records = payloads.size();
+    }
+
+    // enqueues and acks come from different locks in ApplicationQueue
+    private synchronized void append(byte[] payload) throws IOException {
+        RecordFile.writeFully(channel, RecordFile.frame(Collections.singletonList(payload)));
+        channel.force(false);
+        records++;
+    }
+
+    private static byte[] encodeAck(long seq) {
+        ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES);
+        payload.put(ACK).putLong(seq);
+        return payload.array();
+    }
+
+    private static byte[] encodeEnqueue(long seq, AppliedApplication app) {
+        byte[] name = RecordFile.utf8(app.getName());
+        byte[] email = RecordFile.utf8(app.getEmail());
+        SubletListing listing = app.getListing();
+        ByteBuffer payload = ByteBuffer.allocate(1 + Long.BYTES
+                + RecordFile.sizeOf(name) + RecordFile.sizeOf(email) + Integer.BYTES);
+        payload.put(ENQUEUE).putLong(seq);
+        RecordFile.putString(payload, name);
+        RecordFile.putString(payload, email);
+        payload.putInt(listing == null ? -1 : listing.getId());
+        return payload.array();
+    }
+}
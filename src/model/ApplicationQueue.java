@@ -1,29 +1,173 @@
 package model;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * The single pipeline for submitted applications.
+ * A FIFO queue that is safe to use from any thread and survives restarts.
+ * Producers and consumers take separate locks (a two-lock queue), so
+ * submissions never wait behind an admin draining a batch. Each lock only
+ * keeps the write-ahead log in the same order as the queue; the queue itself
+ * is lock-free. The most recently processed applications are remembered too,
+ * across restarts, so a student can still see them.
+ */
 public class ApplicationQueue {
-	// static queue for FIFO appliedapplication management
-    private static final Queue<AppliedApplication> queue = new LinkedList<>();
+    private static final ReentrantLock enqueueLock = new ReentrantLock();
+    private static final ReentrantLock dequeueLock = new ReentrantLock();
+
+    // rewrite the log once acknowledged records outnumber the kept ones by this much
+    private static final int REWRITE_SLACK = 1_000;
+    // processed applications kept for the status screen, newest ones win
+    private static final int PROCESSED_HISTORY = 1_000;
+
+    /**
+     * Holds the queue. The JVM initializes it on first use, so replaying the
+     * log happens when applications are first needed, not at startup.
+     */
+    private static class Pending {
+        // static queue for FIFO appliedapplication management
+        static final ConcurrentLinkedQueue<ApplicationLog.Record> queue = new ConcurrentLinkedQueue<>();
+        // written under the dequeue lock, oldest first
+        static final ConcurrentLinkedDeque<ApplicationLog.Record> processed = new ConcurrentLinkedDeque<>();
+        static int processedCount;
+        static ApplicationLog log = new ApplicationLog(Path.of("."));
+        static long nextSeq;
+
+        static {
+            long start = StartupTimeline.start();
+            try {
+                List<ApplicationLog.Record> pending = log.recover();
+                queue.addAll(pending);
+                for (ApplicationLog.Record record : log.processed()) {
+                    remember(record);
+                }
+                nextSeq = log.lastSeq() + 1;
+                if (log.isNew()) {
+                    // samplers to test queue
+                    SubletListing fenwayFlat = SubletStorage.getListing(8);
+                    ApplicationQueue.enqueue(new AppliedApplication("Emily Kim", "emily@neu.edu", fenwayFlat));
+                    ApplicationQueue.enqueue(new AppliedApplication("Brian Park", "brian@bu.edu", fenwayFlat));
+                }
+            } catch (IOException e) {
+                System.err.println("Error loading application log, running without persistence: " + e.getMessage());
+                log = null;
+            }
+            StartupTimeline.span("recover application queue (" + queue.size() + " pending)", start);
+        }
+
+        // keeps at most PROCESSED_HISTORY records, dropping the oldest
+        static void remember(ApplicationLog.Record record) {
+            processed.addLast(record);
+            if (++processedCount > PROCESSED_HISTORY) {
+                processed.pollFirst();
+                processedCount--;
+            }
+        }
+
+        // triggers initialization; called before taking either lock, since
+        // seeding enqueues and would otherwise deadlock against another thread
+        static void load() {
+        }
+    }
 
     //add new application
     public static void enqueue(AppliedApplication app) {
-        queue.add(app);
+        Pending.load();
+        long sequence;
+        enqueueLock.lock();
+        try {
+            long seq = Pending.nextSeq++;
+            if (Pending.log != null) {
+                try {
+                    Pending.log.logEnqueue(seq, app);
+                } catch (IOException e) {
+                    System.err.println("Error logging application: " + e.getMessage());
+                }
+            }
+            Pending.queue.add(new ApplicationLog.Record(seq, app));
+            sequence = ChangeFeed.reserve(1);
+        } finally {
+            enqueueLock.unlock();
+        }
+        ChangeFeed.applicationSubmitted(sequence, app);
     }
-    //add new application
+
+    //remove the oldest application
     public static AppliedApplication dequeue() {
-        return queue.poll();
+        List<AppliedApplication> batch = dequeueBatch(1);
+        return batch.isEmpty() ? null : batch.get(0);
+    }
+
+    /**
+     * Removes up to n of the oldest applications and acknowledges them in the
+     * log with a single record.
+     *
+     * @param n maximum number of applications to remove
+     * @return the removed applications, oldest first
+     */
+    public static List<AppliedApplication> dequeueBatch(int n) {
+        Pending.load();
+        dequeueLock.lock();
+        try {
+            List<AppliedApplication> batch = new ArrayList<>(Math.min(n, 64));
+            long lastSeq = -1;
+            ApplicationLog.Record record;
+            while (batch.size() < n && (record = Pending.queue.poll()) != null) {
+                batch.add(record.application);
+                Pending.remember(record);
+                lastSeq = record.seq;
+            }
+            if (Pending.log != null && lastSeq >= 0) {
+                try {
+                    Pending.log.logAck(lastSeq);
+                    compactIfNeeded();
+                } catch (IOException e) {
+                    System.err.println("Error acknowledging applications: " + e.getMessage());
+                }
+            }
+            return batch;
+        } finally {
+            dequeueLock.unlock();
+        }
     }
-    //return a list of all applications
-    public static Queue<AppliedApplication> getAll() {
-        return queue;
+
+    //return a snapshot of all pending applications, oldest first
+    public static List<AppliedApplication> getAll() {
+        List<AppliedApplication> pending = new ArrayList<>();
+        for (ApplicationLog.Record record : Pending.queue) {
+            pending.add(record.application);
+        }
+        return Collections.unmodifiableList(pending);
+    }
+
+    /**
+     * @return a snapshot of the most recently processed applications, oldest first
+     */
+    public static List<AppliedApplication> getProcessed() {
+        List<AppliedApplication> processed = new ArrayList<>();
+        for (ApplicationLog.Record record : Pending.processed) {
+            processed.add(record.application);
+        }
+        return Collections.unmodifiableList(processed);
     }
-    // samplers to test queue
-    static {
-        SubletListing fenwayStudio = new SubletListing("Fenway Studio", "Fenway", 1800.0, "Close to NEU", "short");
 
-        ApplicationQueue.enqueue(new AppliedApplication("Emily Kim", "emily@neu.edu", fenwayStudio));
-        ApplicationQueue.enqueue(new AppliedApplication("Brian Park", "brian@bu.edu", fenwayStudio));
+    // called with the dequeue lock held; takes the enqueue lock so no record slips past the rewrite
+    private static void compactIfNeeded() throws IOException {
+        if (Pending.log.records() < Pending.processedCount + Pending.queue.size() + REWRITE_SLACK) {
+            return;
+        }
+        enqueueLock.lock();
+        try {
+            Pending.log.rewrite(new ArrayList<>(Pending.processed), new ArrayList<>(Pending.queue));
+        } finally {
+            enqueueLock.unlock();
+        }
     }
 }
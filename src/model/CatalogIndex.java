@@ -0,0 +1,20 @@
+package model;
+
+import java.util.List;
+
+/**
+ * An index SubletStorage derives from the listing catalog. Called with the
+ * SubletStorage lock held; an update passes the old version to
+ * {@link #remove} and the new one to {@link #add}.
+ */
+interface CatalogIndex {
+
+    void add(SubletListing listing);
+
+    void addAll(List<SubletListing> listings);
+
+    /**
+     * Removes a listing, given the version of it that was indexed.
+     */
+    void remove(SubletListing listing);
+}
@@ -0,0 +1,154 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * One version of the listing catalog. Immutable, and safe to read from any
+ * thread without locks: a table, a dashboard or a search that holds a
+ * snapshot sees the same listings and columns from start to finish, however
+ * the catalog changes meanwhile.
+ *
+ * SubletStorage publishes a new snapshot for every change by swapping a
+ * single volatile reference. A new version shares almost everything with
+ * the one before it. Listings are stored in pages of 1024:
+ * - an append writes into the slot just past the old size, which no older
+ *   snapshot reads
+ * - an edit copies only the page it lands in, plus the short page table
+ * An old version, and any listing only it refers to, is reclaimed by the
+ * garbage collector once the last reader holding it lets go.
+ */
+public final class CatalogSnapshot {
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final long version;
+    private final SubletListing[][] pages;
+    private final int size;
+    private final ColumnarSnapshot columns;
+    private final List<SubletListing> list = new ListView();
+
+    private CatalogSnapshot(long version, SubletListing[][] pages, int size, ColumnarSnapshot columns) {
+        this.version = version;
+        this.pages = pages;
+        this.size = size;
+        this.columns = columns;
+    }
+
+    /**
+     * @return a first version holding the given listings, whose ids must be 0 to size - 1
+     */
+    static CatalogSnapshot of(List<SubletListing> listings, ColumnarSnapshot columns) {
+        SubletListing[][] pages = new SubletListing[Math.max(1, (listings.size() + PAGE_MASK) >>> PAGE_SHIFT)][];
+        for (int id = 0; id < listings.size(); id++) {
+            if (pages[id >>> PAGE_SHIFT] == null) {
+                pages[id >>> PAGE_SHIFT] = new SubletListing[PAGE_SIZE];
+            }
+            pages[id >>> PAGE_SHIFT][id & PAGE_MASK] = listings.get(id);
+        }
+        return new CatalogSnapshot(0, pages, listings.size(), columns);
+    }
+
+    /**
+     * The next version with a listing appended. Must only be called on the
+     * newest version, by the single writer.
+     */
+    CatalogSnapshot append(SubletListing listing, ColumnarSnapshot columns) {
+        int page = size >>> PAGE_SHIFT;
+        SubletListing[][] next = pages;
+        if (page == next.length) {
+            next = Arrays.copyOf(next, next.length * 2);
+        }
+        if (next[page] == null) {
+            next[page] = new SubletListing[PAGE_SIZE];
+        }
+        next[page][size & PAGE_MASK] = listing;
+        return new CatalogSnapshot(version + 1, next, size + 1, columns);
+    }
+
+    /**
+     * The next version with a batch of listings appended, as one change.
+     * Same rules as {@link #append}.
+     */
+    CatalogSnapshot appendAll(List<SubletListing> listings, ColumnarSnapshot columns) {
+        int total = size + listings.size();
+        SubletListing[][] next = pages;
+        int needed = (total + PAGE_MASK) >>> PAGE_SHIFT;
+        if (needed > next.length) {
+            next = Arrays.copyOf(next, Math.max(needed, next.length * 2));
+        }
+        for (int i = 0; i < listings.size(); i++) {
+            int id = size + i;
+            if (next[id >>> PAGE_SHIFT] == null) {
+                next[id >>> PAGE_SHIFT] = new SubletListing[PAGE_SIZE];
+            }
+            next[id >>> PAGE_SHIFT][id & PAGE_MASK] = listings.get(i);
+        }
+        return new CatalogSnapshot(version + 1, next, total, columns);
+    }
+
+    /**
+     * The next version with one listing replaced; this version keeps the old one.
+     */
+    CatalogSnapshot replace(SubletListing listing, ColumnarSnapshot columns) {
+        int id = listing.getId();
+        SubletListing[][] next = pages.clone();
+        next[id >>> PAGE_SHIFT] = next[id >>> PAGE_SHIFT].clone();
+        next[id >>> PAGE_SHIFT][id & PAGE_MASK] = listing;
+        return new CatalogSnapshot(version + 1, next, size, columns);
+    }
+
+    /**
+     * @return how many changes the catalog had gone through when this snapshot was taken
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return number of listings; ids run from 0 to this minus one
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the listing with the given id as of this version, or null if there is none
+     */
+    public SubletListing get(int id) {
+        return id >= 0 && id < size ? pages[id >>> PAGE_SHIFT][id & PAGE_MASK] : null;
+    }
+
+    /**
+     * @return the same version in columns, for filters that read single fields
+     */
+    public ColumnarSnapshot columns() {
+        return columns;
+    }
+
+    /**
+     * @return a read-only list view of this version, in id order
+     */
+    public List<SubletListing> asList() {
+        return list;
+    }
+
+    private class ListView extends AbstractList<SubletListing> implements RandomAccess {
+        @Override
+        public SubletListing get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            return pages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process feed of every model mutation, on a preallocated ring buffer.
+ * A mutation fills a slot that already exists: reserve a sequence number,
+ * write the event's fields in place, mark the slot published. Publishing
+ * allocates nothing and takes no lock. Several threads mutate the model,
+ * so a reservation is one atomic add; each slot still has exactly one
+ * writer.
+ *
+ * Reserving never waits, so a writer reserves while it holds its own lock,
+ * which fixes the event order, and publishes after releasing it. Only the
+ * publishing step waits, and only if a subscriber is a whole ring behind:
+ * it then holds back that one publisher rather than overwrite events the
+ * subscriber hasn't seen, and other writers keep going.
+ *
+ * Each subscriber runs on its own daemon thread with its own position in
+ * the ring. It takes every event published since its last pass as one
+ * batch, and advances its position once per batch. An idle subscriber
+ * parks until the next publish wakes it.
+ *
+ * An event is only valid during the handler call; its slot is reused later.
+ */
+public final class ChangeFeed {
+
+    /** What changed. */
+    public enum Type {
+        /** A listing was stored: {@link Event#getListing()}. */
+        LISTING_ADDED,
+        /** A listing was replaced: {@link Event#getBefore()} and {@link Event#getListing()}. */
+        LISTING_UPDATED,
+        /** A listing was clicked: {@link Event#getListingId()}. */
+        CLICK,
+        /** An application was queued: {@link Event#getApplication()}. */
+        APPLICATION_SUBMITTED,
+        /** An account was created: {@link Event#getUsername()}. */
+        USER_REGISTERED
+    }
+
+    /** One slot of the ring. Fields are written by the feed, read by handlers. */
+    public static final class Event {
+        private Type type;
+        private long sequence;
+        private long timestamp;
+        private int listingId;
+        private SubletListing before;
+        private SubletListing listing;
+        private AppliedApplication application;
+        private String username;
+
+        public Type getType() { return type; }
+        public long getSequence() { return sequence; }
+        /** @return when the event was published, in epoch milliseconds */
+        public long getTimestamp() { return timestamp; }
+        /** @return the listing the event is about, or -1 */
+        public int getListingId() { return listingId; }
+        public SubletListing getBefore() { return before; }
+        public SubletListing getListing() { return listing; }
+        public AppliedApplication getApplication() { return application; }
+        public String getUsername() { return username; }
+    }
+
+    /** Receives events in publish order, on the subscription's own thread. */
+    public interface Handler {
+        /**
+         * @param endOfBatch true for the last event currently available, a
+         *        good point to flush work accumulated over the batch
+         */
+        void onEvent(Event event, boolean endOfBatch);
+    }
+
+    /** A subscriber's position in the feed. */
+    public static final class Subscription {
+        private final String name;
+        private final Handler handler;
+        // last sequence fully handled
+        private final AtomicLong sequence;
+        private volatile boolean running = true;
+        // set while the thread is parked waiting for events, so publishers know to wake it
+        private volatile Thread waiter;
+
+        private Subscription(String name, Handler handler, long start) {
+            this.name = name;
+            this.handler = handler;
+            this.sequence = new AtomicLong(start);
+        }
+
+        /**
+         * Waits until every event published before this call has been handled,
+         * e.g. so a read sees the caller's own writes.
+         */
+        public void awaitCaughtUp() {
+            long target = claimed.get();
+            for (int spins = 0; sequence.get() < target && running; spins++) {
+                idle(spins);
+            }
+        }
+
+        /** @return number of published events not yet handled */
+        public long lag() {
+            return Math.max(0, claimed.get() - sequence.get());
+        }
+
+        /** Stops the subscription after its current batch. */
+        public void close() {
+            running = false;
+            unregister(this);
+            LockSupport.unpark(waiter);
+        }
+
+        private void run() {
+            try {
+                int spins = 0;
+                while (running) {
+                    long next = sequence.get() + 1;
+                    long last = next - 1;
+                    while (isPublished(last + 1)) {
+                        last++;
+                    }
+                    if (last < next) {
+                        if (spins < PARK_AFTER) {
+                            idle(spins++);
+                        } else {
+                            park(next);
+                        }
+                        continue;
+                    }
+                    spins = 0;
+                    for (long s = next; s <= last; s++) {
+                        try {
+                            handler.onEvent(ring[(int) (s & MASK)], s == last);
+                        } catch (RuntimeException e) {
+                            System.err.println("Error in change feed subscriber " + name + ": " + e.getMessage());
+                            e.printStackTrace();
+                        }
+                    }
+                    sequence.set(last);
+                }
+            } finally {
+                // a dead subscriber must not hold publishers back
+                running = false;
+                unregister(this);
+            }
+        }
+
+        // the flag is set before the last look, and publish sets the slot before
+        // reading the flag, so one side always sees the other
+        private void park(long next) {
+            waiter = Thread.currentThread();
+            if (running && !isPublished(next)) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+        }
+    }
+
+    private static final int SIZE = 1 << 16;
+    private static final int MASK = SIZE - 1;
+    // idle rounds a subscriber spins and yields before it parks
+    private static final int PARK_AFTER = 200;
+
+    private static final Event[] ring = new Event[SIZE];
+    // sequence last published in each slot; a slot is readable once it holds the expected sequence
+    private static final AtomicLongArray published = new AtomicLongArray(SIZE);
+    // last sequence handed to a publisher
+    private static final AtomicLong claimed = new AtomicLong(-1);
+    // replaced as a whole on subscribe and close, so publishers loop over it without an iterator
+    private static volatile Subscription[] subscriptions = new Subscription[0];
+    // a lower bound on every subscriber's position; only moves forward, saves a scan on most reservations
+    private static final AtomicLong gating = new AtomicLong(-1);
+
+    static {
+        for (int i = 0; i < SIZE; i++) {
+            ring[i] = new Event();
+            published.set(i, -1);
+        }
+    }
+
+    private ChangeFeed() {
+    }
+
+    /**
+     * Starts delivering events published from now on to the handler, on a
+     * new daemon thread.
+     */
+    public static Subscription subscribe(String name, Handler handler) {
+        Subscription subscription = new Subscription(name, handler, claimed.get());
+        register(subscription);
+        Thread thread = new Thread(subscription::run, "change-feed-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        return subscription;
+    }
+
+    /**
+     * Reserves sequence numbers for events to publish later with the
+     * methods taking a sequence. Never waits, so it can be called under the
+     * lock that orders the mutations; each reserved sequence must then be
+     * published, or subscribers stall at the gap.
+     *
+     * @return the first of count consecutive sequences
+     */
+    static long reserve(int count) {
+        return claimed.addAndGet(count) - count + 1;
+    }
+
+    static void listingAdded(long sequence, SubletListing listing) {
+        Event event = slot(sequence, Type.LISTING_ADDED);
+        event.listingId = listing.getId();
+        event.listing = listing;
+        publish(event);
+    }
+
+    static void listingUpdated(long sequence, SubletListing before, SubletListing after) {
+        Event event = slot(sequence, Type.LISTING_UPDATED);
+        event.listingId = after.getId();
+        event.before = before;
+        event.listing = after;
+        publish(event);
+    }
+
+    static void applicationSubmitted(long sequence, AppliedApplication application) {
+        Event event = slot(sequence, Type.APPLICATION_SUBMITTED);
+        event.listingId = application.getListing() == null ? -1 : application.getListing().getId();
+        event.application = application;
+        publish(event);
+    }
+
+    static void click(int listingId) {
+        Event event = slot(reserve(1), Type.CLICK);
+        event.listingId = listingId;
+        publish(event);
+    }
+
+    static void userRegistered(String username) {
+        Event event = slot(reserve(1), Type.USER_REGISTERED);
+        event.username = username;
+        publish(event);
+    }
+
+    // waits only if the slot still holds an event some subscriber hasn't handled
+    private static Event slot(long sequence, Type type) {
+        long wrapPoint = sequence - SIZE;
+        if (wrapPoint > gating.get()) {
+            for (int spins = 0; wrapPoint > gating.accumulateAndGet(minSubscriberSequence(sequence), Math::max); spins++) {
+                idle(spins);
+            }
+        }
+        Event event = ring[(int) (sequence & MASK)];
+        event.type = type;
+        event.sequence = sequence;
+        event.timestamp = System.currentTimeMillis();
+        event.listingId = -1;
+        event.before = null;
+        event.listing = null;
+        event.application = null;
+        event.username = null;
+        return event;
+    }
+
+    // a volatile store: it makes the fields written above visible to whoever
+    // sees the sequence, and orders it before the check for parked subscribers
+    private static void publish(Event event) {
+        published.set((int) (event.sequence & MASK), event.sequence);
+        Subscription[] active = subscriptions;
+        for (int i = 0; i < active.length; i++) {
+            Thread waiter = active[i].waiter;
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    private static boolean isPublished(long sequence) {
+        return published.get((int) (sequence & MASK)) == sequence;
+    }
+
+    private static long minSubscriberSequence(long fallback) {
+        long min = fallback;
+        Subscription[] active = subscriptions;
+        for (int i = 0; i < active.length; i++) {
+            min = Math.min(min, active[i].sequence.get());
+        }
+        return min;
+    }
+
+    private static synchronized void register(Subscription subscription) {
+        Subscription[] next = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        next[next.length - 1] = subscription;
+        subscriptions = next;
+    }
+
+    // called from close() and again when the thread exits; the second call finds nothing
+    private static synchronized void unregister(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] next = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                subscriptions = next;
+                return;
+            }
+        }
+    }
+
+    // spin briefly, then yield, then sleep in short steps
+    private static void idle(int spins) {
+        if (spins < 100) {
+            Thread.onSpinWait();
+        } else if (spins < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package model;
+
+/**
+ * Read-only, column-oriented view of the listing catalog at one point in
+ * time. Rows are listing ids. Locations and modes are dictionary codes;
+ * {@link #location(int)} and {@link #mode(int)} turn a code back into its
+ * name. Safe to read from any thread, and unaffected by later changes to the
+ * catalog.
+ */
+public class ColumnarSnapshot {
+
+    private static final int SHIFT = ListingColumns.PAGE_SHIFT;
+    private static final int MASK = ListingColumns.PAGE_MASK;
+
+    private final int size;
+    // rows in pages of 1024; a page may be shared with other snapshots, never written while it is
+    private final ListingColumns.Page[] pages;
+    private final char[] heap;
+    private final String[] locations;
+    private final String[] modes;
+
+    ColumnarSnapshot(int size, ListingColumns.Page[] pages, char[] heap, String[] locations, String[] modes) {
+        this.size = size;
+        this.pages = pages;
+        this.heap = heap;
+        this.locations = locations;
+        this.modes = modes;
+    }
+
+    /**
+     * @return number of rows; row i holds the listing with id i
+     */
+    public int size() { return size; }
+
+    public double price(int row) { return pages[row >>> SHIFT].prices[row & MASK]; }
+    /** @return degrees, or NaN for a listing that isn't on the map */
+    public double latitude(int row) { return pages[row >>> SHIFT].latitudes[row & MASK]; }
+    public double longitude(int row) { return pages[row >>> SHIFT].longitudes[row & MASK]; }
+    public boolean approximateLocation(int row) { return pages[row >>> SHIFT].approximate[row & MASK]; }
+    public int locationCode(int row) { return pages[row >>> SHIFT].locationCodes[row & MASK]; }
+    public int modeCode(int row) { return pages[row >>> SHIFT].modeCodes[row & MASK]; }
+
+    public String title(int row) {
+        ListingColumns.Page page = pages[row >>> SHIFT];
+        return string(page.titleOffsets[row & MASK], page.titleLengths[row & MASK]);
+    }
+
+    public String description(int row) {
+        ListingColumns.Page page = pages[row >>> SHIFT];
+        return string(page.descriptionOffsets[row & MASK], page.descriptionLengths[row & MASK]);
+    }
+
+    public String imagePath(int row) {
+        ListingColumns.Page page = pages[row >>> SHIFT];
+        return string(page.imagePathOffsets[row & MASK], page.imagePathLengths[row & MASK]);
+    }
+
+    /**
+     * Builds a listing object from one row, for code that needs the object
+     * form. Each call returns a new, detached copy carrying the row's id.
+     */
+    public SubletListing listing(int row) {
+        return new SubletListing(row, title(row), locations[locationCode(row)], price(row),
+                description(row), modes[modeCode(row)], imagePath(row), latitude(row), longitude(row),
+                approximateLocation(row));
+    }
+
+    /** @return number of distinct locations; codes run from 0 to this minus one */
+    public int locationCount() { return locations.length; }
+    public String location(int code) { return locations[code]; }
+
+    /** @return number of distinct sublet modes; codes run from 0 to this minus one */
+    public int modeCount() { return modes.length; }
+    public String mode(int code) { return modes[code]; }
+
+    /**
+     * @return the code of the given location, or -1 if no listing has it
+     */
+    public int locationCode(String location) {
+        return indexOf(locations, location);
+    }
+
+    /**
+     * @return the code of the given sublet mode, or -1 if no listing has it
+     */
+    public int modeCode(String mode) {
+        return indexOf(modes, mode);
+    }
+
+    /**
+     * Like {@link ListingQuery#matches}, evaluated against the columns.
+     *
+     * @return true if the row exists in this snapshot and satisfies the query
+     */
+    public boolean matches(int row, ListingQuery query) {
+        if (row < 0 || row >= size) {
+            return false;
+        }
+        ListingColumns.Page page = pages[row >>> SHIFT];
+        int slot = row & MASK;
+        double price = page.prices[slot];
+        return price >= query.getMinPrice() && price <= query.getMaxPrice()
+                && (query.getLocation() == null || query.getLocation().equals(locations[page.locationCodes[slot]]))
+                && (query.getMode() == null || query.getMode().equals(modes[page.modeCodes[slot]]))
+                && (!query.hasRadius() || query.isNear(page.latitudes[slot], page.longitudes[slot]));
+    }
+
+    private String string(int offset, int length) {
+        return length < 0 ? null : new String(heap, offset, length);
+    }
+
+    private static int indexOf(String[] dictionary, String value) {
+        for (int code = 0; code < dictionary.length; code++) {
+            if (value == null ? dictionary[code] == null : value.equals(dictionary[code])) {
+                return code;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,275 @@
+package model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Process-wide user credential service.
+ * Credentials are read from disk once and kept in memory. New and upgraded
+ * entries are appended to a journal instead of rewriting the whole
+ * credentials file, and the journal is folded back into the file every so
+ * often. Passwords are stored as salted PBKDF2 hashes. Hashing is slow on
+ * purpose, so it runs on a background executor and callers get a future.
+ */
+public class CredentialStore {
+
+    private static final String CREDENTIALS_FILE = "user_credentials.properties";
+    private static final String JOURNAL_FILE = "user_credentials.journal";
+
+    // fold the journal into the credentials file after this many entries
+    private static final int COMPACT_AFTER = 100;
+
+    private static final String HASH_PREFIX = "pbkdf2";
+    private static final int ITERATIONS = 120_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    /** Stored secret and role of one user. */
+    private static class Credential {
+        // either a "pbkdf2$iterations$salt$hash" string or a legacy plaintext password
+        final String secret;
+        final String role;
+
+        Credential(String secret, String role) {
+            this.secret = secret;
+            this.role = role;
+        }
+    }
+
+    // placeholder that reserves a username while its password is being hashed
+    private static final Credential PENDING = new Credential(null, null);
+
+    private static final Map<String, Credential> users = new ConcurrentHashMap<>();
+    private static final SecureRandom random = new SecureRandom();
+
+    private static final ExecutorService hashers = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), daemon("credential-hasher"));
+    // single thread, so journal appends and compactions never interleave
+    private static final ExecutorService journal = Executors.newSingleThreadExecutor(daemon("credential-journal"));
+
+    private static int journalEntries;
+
+    static {
+        long start = StartupTimeline.start();
+        loadCredentials();
+        StartupTimeline.span("load credentials (" + users.size() + " users)", start);
+        // let queued journal writes finish before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            journal.shutdown();
+            try {
+                journal.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+    }
+
+    /**
+     * Checks a username and password off the calling thread.
+     *
+     * @return a future holding the user's role, or null if the credentials are invalid
+     */
+    public static CompletableFuture<String> authenticate(String username, String password) {
+        if (username == null || password == null || username.isEmpty() || password.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Credential credential = users.get(username);
+        if (credential == null || credential == PENDING) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            if (!credential.secret.startsWith(HASH_PREFIX + "$")) {
+                // legacy plaintext entry: check it, then store a hash in its place
+                if (!MessageDigest.isEqual(credential.secret.getBytes(), password.getBytes())) {
+                    return null;
+                }
+                Credential upgraded = new Credential(hash(password), credential.role);
+                if (users.replace(username, credential, upgraded)) {
+                    journal.execute(() -> appendJournal(username, upgraded));
+                }
+                return credential.role;
+            }
+            return verify(password, credential.secret) ? credential.role : null;
+        }, hashers);
+    }
+
+    /**
+     * Registers a new user with the default "user" role.
+     *
+     * @return a future that completes with true once the user is stored, or
+     *         false if the input is empty or the username is taken
+     */
+    public static CompletableFuture<Boolean> register(String username, String password) {
+        return register(username, password, "user");
+    }
+
+    private static CompletableFuture<Boolean> register(String username, String password, String role) {
+        if (username == null || password == null || username.isEmpty() || password.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        // reserve the name first so two concurrent signups can't both succeed
+        if (users.putIfAbsent(username, PENDING) != null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            Credential credential = new Credential(hash(password), role);
+            users.put(username, credential);
+            return credential;
+        }, hashers).thenApplyAsync(credential -> {
+            // the signup is acknowledged only once its journal entry is on disk
+            appendJournal(username, credential);
+            ChangeFeed.userRegistered(username);
+            return true;
+        }, journal).exceptionally(e -> {
+            users.remove(username, PENDING);
+            System.err.println("Error registering user: " + e.getMessage());
+            return false;
+        });
+    }
+
+    /**
+     * Loads the credentials file and replays the journal on top of it.
+     * Creates the default admin account if no users exist yet.
+     */
+    private static void loadCredentials() {
+        File file = new File(CREDENTIALS_FILE);
+        if (file.exists()) {
+            load(file);
+        }
+        File journalFile = new File(JOURNAL_FILE);
+        if (journalFile.exists()) {
+            journalEntries = load(journalFile);
+        }
+        if (users.isEmpty()) {
+            register("admin", "admin", "admin");
+        }
+    }
+
+    private static int load(File file) {
+        Properties properties = new Properties();
+        try (FileInputStream fis = new FileInputStream(file)) {
+            properties.load(fis);
+        } catch (IOException e) {
+            System.err.println("Error loading user credentials: " + e.getMessage());
+        }
+        for (String username : properties.stringPropertyNames()) {
+            String[] parts = properties.getProperty(username).split(":");
+            if (parts.length == 2) {
+                users.put(username, new Credential(parts[0], parts[1]));
+            }
+        }
+        return properties.size();
+    }
+
+    // runs on the journal thread
+    private static void appendJournal(String username, Credential credential) {
+        Properties entry = new Properties();
+        entry.setProperty(username, credential.secret + ":" + credential.role);
+        try (FileOutputStream fos = new FileOutputStream(JOURNAL_FILE, true)) {
+            // the stream form escapes non-Latin-1 characters, as compaction does, so load reads them back;
+            // drop its timestamp comment
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            entry.store(line, null);
+            StringBuilder record = new StringBuilder();
+            for (String l : line.toString(StandardCharsets.ISO_8859_1).split("\\R")) {
+                if (!l.startsWith("#") && !l.isEmpty()) {
+                    record.append(l).append(System.lineSeparator());
+                }
+            }
+            fos.write(record.toString().getBytes(StandardCharsets.ISO_8859_1));
+            fos.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("Error saving user credentials: " + e.getMessage());
+            return;
+        }
+        if (++journalEntries >= COMPACT_AFTER) {
+            compact();
+        }
+    }
+
+    // rewrites the credentials file from memory and empties the journal; runs on the journal thread
+    private static void compact() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Credential> entry : users.entrySet()) {
+            Credential credential = entry.getValue();
+            if (credential != PENDING) {
+                properties.setProperty(entry.getKey(), credential.secret + ":" + credential.role);
+            }
+        }
+        File tmp = new File(CREDENTIALS_FILE + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            properties.store(fos, "User Credentials");
+            fos.getFD().sync();
+        } catch (IOException e) {
+            System.err.println("Error saving user credentials: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), new File(CREDENTIALS_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(new File(JOURNAL_FILE).toPath());
+            journalEntries = 0;
+        } catch (IOException e) {
+            System.err.println("Error compacting user credentials: " + e.getMessage());
+        }
+    }
+
+    private static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return HASH_PREFIX + "$" + ITERATIONS + "$" + base64.encodeToString(salt)
+                + "$" + base64.encodeToString(pbkdf2(password, salt, ITERATIONS));
+    }
+
+    private static boolean verify(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] salt = base64.decode(parts[2]);
+        byte[] expected = base64.decode(parts[3]);
+        return MessageDigest.isEqual(expected, pbkdf2(password, salt, Integer.parseInt(parts[1])));
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running statistics over the listing catalog for the admin dashboard.
+ * Subscribes to SubletStorage and keeps per-region sum, count, min and max
+ * in primitive fields, plus counts per sublet mode. Reading the dashboard
+ * therefore costs O(regions), not O(listings).
+ *
+ * Listener callbacks run while SubletStorage holds its lock, so the lock
+ * order is always SubletStorage, then this class.
+ */
+public class DashboardAggregates {
+
+    /** Price statistics for one region (listing location). */
+    public static class RegionSummary {
+        private final String region;
+        private final long count;
+        private final double averagePrice;
+        private final double minPrice;
+        private final double maxPrice;
+
+        RegionSummary(String region, long count, double averagePrice, double minPrice, double maxPrice) {
+            this.region = region;
+            this.count = count;
+            this.averagePrice = averagePrice;
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+        }
+
+        public String getRegion() { return region; }
+        public long getCount() { return count; }
+        public double getAveragePrice() { return averagePrice; }
+        public double getMinPrice() { return minPrice; }
+        public double getMaxPrice() { return maxPrice; }
+    }
+
+    private static class RegionStats {
+        double sum;
+        long count;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+    }
+
+    private static final Map<String, RegionStats> regions = new HashMap<>();
+    private static long shortTerm;
+    private static long longTerm;
+
+    static {
+        SubletStorage.addListener(new ListingListener() {
+            @Override
+            public void listingAdded(SubletListing listing) {
+                add(listing);
+            }
+
+            @Override
+            public void listingsAdded(List<SubletListing> listings) {
+                synchronized (DashboardAggregates.class) {
+                    for (SubletListing listing : listings) {
+                        add(listing);
+                    }
+                }
+            }
+
+            @Override
+            public void listingUpdated(SubletListing before, SubletListing after) {
+                remove(before);
+                add(after);
+            }
+        });
+    }
+
+    /**
+     * @return price statistics for every region that has listings
+     */
+    public static synchronized List<RegionSummary> regionSummaries() {
+        List<RegionSummary> result = new ArrayList<>(regions.size());
+        for (Map.Entry<String, RegionStats> entry : regions.entrySet()) {
+            RegionStats stats = entry.getValue();
+            result.add(new RegionSummary(entry.getKey(), stats.count,
+                    stats.sum / stats.count, stats.min, stats.max));
+        }
+        return result;
+    }
+
+    public static synchronized long shortTermCount() {
+        return shortTerm;
+    }
+
+    public static synchronized long longTermCount() {
+        return longTerm;
+    }
+
+    private static synchronized void add(SubletListing listing) {
+        RegionStats stats = regions.computeIfAbsent(listing.getLocation(), k -> new RegionStats());
+        double price = listing.getPrice();
+        stats.sum += price;
+        stats.count++;
+        stats.min = Math.min(stats.min, price);
+        stats.max = Math.max(stats.max, price);
+        if (isShortTerm(listing)) {
+            shortTerm++;
+        } else {
+            longTerm++;
+        }
+    }
+
+    private static synchronized void remove(SubletListing listing) {
+        RegionStats stats = regions.get(listing.getLocation());
+        if (stats != null) {
+            double price = listing.getPrice();
+            stats.sum -= price;
+            stats.count--;
+            if (stats.count == 0) {
+                regions.remove(listing.getLocation());
+            } else if (price <= stats.min || price >= stats.max) {
+                // the old min or max is gone; the price index already reflects the edit
+                stats.min = SubletStorage.minPrice(listing.getLocation());
+                stats.max = SubletStorage.maxPrice(listing.getLocation());
+            }
+        }
+        if (isShortTerm(listing)) {
+            shortTerm--;
+        } else {
+            longTerm--;
+        }
+    }
+
+    private static boolean isShortTerm(SubletListing listing) {
+        return "short".equalsIgnoreCase(listing.getSubletMode());
+    }
+}
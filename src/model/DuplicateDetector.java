@@ -0,0 +1,343 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spots new listings that are likely copies of existing ones.
+ * Text: each listing's title and description are cut into overlapping
+ * five-character shingles and summarized by a MinHash signature. Two texts
+ * agree on each signature value with probability close to their Jaccard
+ * similarity. The signature is split into bands, and listings are filed
+ * under one bucket per band (locality-sensitive hashing). Near-identical
+ * texts share at least one bucket with high probability; unrelated texts
+ * almost never do. A lookup reads a bounded number of listings from a fixed
+ * number of buckets, so it takes constant time whatever the catalog size.
+ * Images: a listing checked with {@link #findDuplicates} before it is
+ * posted is also filed under a hash of its image file's contents, which
+ * catches the same photo under another name. Only that check reads the
+ * file, outside any lock, for an image the user uploaded through the app;
+ * the index itself never touches the file system, so a listing stored by
+ * any other route (e.g. the HTTP API) can't make it read arbitrary files.
+ *
+ * Subscribes to SubletStorage. Building the index replays the whole
+ * catalog, so call {@link #load()} off the FX thread before the first check.
+ * Listener callbacks run while SubletStorage holds its lock, so the lock
+ * order is always SubletStorage, then this class.
+ */
+public class DuplicateDetector {
+
+    private static final int SHINGLE = 5;
+    // 6 bands of 5 rows: texts above roughly 70% similarity usually collide
+    private static final int BANDS = 6;
+    private static final int ROWS = 5;
+    private static final int HASHES = BANDS * ROWS;
+    // estimated similarity at which a collision is reported
+    private static final double THRESHOLD = 0.7;
+    // listings checked per bucket, newest first, so templated text can't make lookups slow
+    private static final int MAX_CHAIN = 32;
+    private static final int MAX_RESULTS = 5;
+
+    private static final long SALT = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Holds the index. Initialized on first use, which replays the catalog.
+     */
+    private static class Index {
+        // per band: bucket -> newest listing id in it, and per listing id -> next id in its bucket
+        static int[][] heads = new int[BANDS][];
+        static int[][] next = new int[BANDS][64];
+        static int[][] keys = new int[BANDS][64];
+        static int count;
+        static final Map<Long, List<Integer>> byImage = new HashMap<>();
+        // image hashes computed during a check, the only ones the index files listings under
+        static final Map<String, Long> imageHashes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > 64;
+            }
+        };
+
+        static {
+            long start = StartupTimeline.start();
+            for (int band = 0; band < BANDS; band++) {
+                heads[band] = new int[1024];
+                Arrays.fill(heads[band], -1);
+            }
+            SubletStorage.addListener(new ListingListener() {
+                @Override
+                public void listingAdded(SubletListing listing) {
+                    add(listing);
+                }
+
+                @Override
+                public void listingUpdated(SubletListing before, SubletListing after) {
+                    update(after);
+                }
+            });
+            StartupTimeline.span("build duplicate index (" + count + " listings)", start);
+        }
+    }
+
+    /**
+     * Builds the index if it hasn't been built yet.
+     */
+    public static void load() {
+        // touching Index runs its initializer, outside this class's lock to keep the lock order
+        Index.byImage.getClass();
+    }
+
+    /**
+     * @param imagePath the image the user uploaded for the listing, or null;
+     *        hashed here, and the hash is kept for when the listing is stored
+     * @return existing listings that are probably the same listing, closest first
+     */
+    public static List<SubletListing> findDuplicates(String title, String description, String imagePath) {
+        load();
+        int[] signature = signature(title, description);
+        Long imageHash = imageHash(imagePath);
+        List<SubletListing> result = new ArrayList<>();
+        synchronized (DuplicateDetector.class) {
+            if (imageHash != null) {
+                Index.imageHashes.put(imagePath, imageHash);
+                for (int id : Index.byImage.getOrDefault(imageHash, List.of())) {
+                    addResult(result, SubletStorage.getListing(id));
+                }
+            }
+            List<int[]> scored = new ArrayList<>();
+            for (int band = 0; band < BANDS; band++) {
+                int[] heads = Index.heads[band];
+                int key = bandKey(signature, band);
+                int seen = 0;
+                for (int id = heads[key & (heads.length - 1)]; id >= 0 && seen < MAX_CHAIN;
+                        id = Index.next[band][id]) {
+                    if (Index.keys[band][id] != key) {
+                        continue; // another key sharing the slot
+                    }
+                    seen++;
+                    SubletListing candidate = SubletStorage.getListing(id);
+                    if (candidate != null) {
+                        int agreeing = agreement(signature, signature(candidate.getTitle(), candidate.getDescription()));
+                        if (agreeing >= THRESHOLD * HASHES) {
+                            scored.add(new int[] { agreeing, id });
+                        }
+                    }
+                }
+            }
+            scored.sort((a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0]) : Integer.compare(b[1], a[1]));
+            for (int[] score : scored) {
+                addResult(result, SubletStorage.getListing(score[1]));
+            }
+        }
+        return result;
+    }
+
+    private static void addResult(List<SubletListing> result, SubletListing listing) {
+        if (listing != null && result.size() < MAX_RESULTS && !result.contains(listing)) {
+            result.add(listing);
+        }
+    }
+
+    private static synchronized void add(SubletListing listing) {
+        int id = listing.getId();
+        if (id >= Index.next[0].length) {
+            int capacity = Math.max(id + 1, Index.next[0].length * 2);
+            for (int band = 0; band < BANDS; band++) {
+                Index.next[band] = Arrays.copyOf(Index.next[band], capacity);
+                Index.keys[band] = Arrays.copyOf(Index.keys[band], capacity);
+            }
+        }
+        int[] signature = signature(listing.getTitle(), listing.getDescription());
+        for (int band = 0; band < BANDS; band++) {
+            Index.keys[band][id] = bandKey(signature, band);
+            link(band, id);
+        }
+        Index.count++;
+        if (Index.count > Index.heads[0].length) {
+            rehash(Index.heads[0].length * 2);
+        }
+        // runs under the SubletStorage lock, so only a hash computed by a check is used
+        Long imageHash = Index.imageHashes.get(listing.getImagePath());
+        if (imageHash != null) {
+            Index.byImage.computeIfAbsent(imageHash, k -> new ArrayList<>()).add(id);
+        }
+    }
+
+    // an edited text moves to new buckets; stale image entries are caught when read
+    private static synchronized void update(SubletListing listing) {
+        int id = listing.getId();
+        int[] signature = signature(listing.getTitle(), listing.getDescription());
+        for (int band = 0; band < BANDS; band++) {
+            int key = bandKey(signature, band);
+            if (key != Index.keys[band][id]) {
+                unlink(band, id);
+                Index.keys[band][id] = key;
+                link(band, id);
+            }
+        }
+    }
+
+    private static void link(int band, int id) {
+        int[] heads = Index.heads[band];
+        int slot = Index.keys[band][id] & (heads.length - 1);
+        Index.next[band][id] = heads[slot];
+        heads[slot] = id;
+    }
+
+    private static void unlink(int band, int id) {
+        int[] heads = Index.heads[band];
+        int[] next = Index.next[band];
+        int slot = Index.keys[band][id] & (heads.length - 1);
+        if (heads[slot] == id) {
+            heads[slot] = next[id];
+            return;
+        }
+        for (int prev = heads[slot]; prev >= 0; prev = next[prev]) {
+            if (next[prev] == id) {
+                next[prev] = next[id];
+                return;
+            }
+        }
+    }
+
+    // keeps about one listing per slot; chains are relinked oldest first so they stay newest first
+    private static void rehash(int size) {
+        for (int band = 0; band < BANDS; band++) {
+            int[] heads = new int[size];
+            Arrays.fill(heads, -1);
+            Index.heads[band] = heads;
+            for (int id = 0; id < Index.count; id++) {
+                link(band, id);
+            }
+        }
+    }
+
+    /**
+     * MinHash signature of a listing's text, built in one pass: each shingle
+     * is hashed once, and the hash picks one of the signature's bins and
+     * competes for that bin's minimum. Bins no shingle landed in borrow the
+     * next filled bin's value, so short texts still get a full signature.
+     */
+    static int[] signature(String title, String description) {
+        String text = normalize((title == null ? "" : title) + " " + (description == null ? "" : description));
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int shingles = Math.max(1, text.length() - SHINGLE + 1);
+        for (int start = 0; start < shingles; start++) {
+            long hash = 0;
+            for (int i = start; i < Math.min(start + SHINGLE, text.length()); i++) {
+                hash = hash * 31 + text.charAt(i);
+            }
+            hash = mix(hash);
+            int bin = (int) (((hash >>> 32) * HASHES) >>> 32);
+            int value = (int) hash & Integer.MAX_VALUE;
+            if (value < signature[bin]) {
+                signature[bin] = value;
+            }
+        }
+        densify(signature);
+        return signature;
+    }
+
+    // an empty bin takes the value of the next filled one, salted with the distance
+    private static void densify(int[] signature) {
+        int[] filled = signature.clone();
+        for (int bin = 0; bin < HASHES; bin++) {
+            if (filled[bin] != Integer.MAX_VALUE) {
+                continue;
+            }
+            for (int distance = 1; distance < HASHES; distance++) {
+                int value = filled[(bin + distance) % HASHES];
+                if (value != Integer.MAX_VALUE) {
+                    signature[bin] = (int) mix(value + (long) distance * SALT) & Integer.MAX_VALUE;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int agreement(int[] a, int[] b) {
+        int agreeing = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) {
+                agreeing++;
+            }
+        }
+        return agreeing;
+    }
+
+    private static int bandKey(int[] signature, int band) {
+        long hash = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            hash = mix(hash * 31 + signature[i]);
+        }
+        return (int) hash;
+    }
+
+    // lower case letters and digits, single spaces between words
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(c);
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        return normalized.toString().trim();
+    }
+
+    /**
+     * @return a hash of the image file's contents, or null if the path isn't a readable local file
+     */
+    private static Long imageHash(String imagePath) {
+        if (imagePath == null || imagePath.isEmpty() || imagePath.startsWith("@")) {
+            return null;
+        }
+        Path path = Path.of(imagePath);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            byte[] sha = digest.digest();
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = hash << 8 | (sha[i] & 0xFF);
+            }
+            return hash;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            System.err.println("Error hashing image " + imagePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // finalizer from MurmurHash3
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93E2D4EAD53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,299 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Spatial index over listing coordinates, maintained by SubletStorage.
+ * The map is cut into a uniform grid of cells about a kilometre across. Each
+ * cell keeps the ids and coordinates of its listings side by side in
+ * primitive arrays.
+ * - a radius query only visits the cells overlapping the circle's bounding
+ *   box
+ * - a k-nearest query visits rings of cells outward from the query point and
+ *   stops once no unvisited cell can hold anything closer
+ * Both cost roughly the number of listings nearby, not the catalog size.
+ * Listings without coordinates are not indexed.
+ *
+ * Queries may run on background threads while SubletStorage writes, so
+ * access goes through a read-write lock.
+ */
+class GeoIndex implements CatalogIndex {
+
+    static final double EARTH_RADIUS_KM = 6371.0;
+    static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180;
+
+    // about 1.1 km north to south, 0.8 km east to west around Boston
+    private static final double CELL_DEGREES = 0.01;
+
+    private static class Cell {
+        int[] ids = new int[8];
+        double[] latitudes = new double[8];
+        double[] longitudes = new double[8];
+        int size;
+
+        void add(int id, double latitude, double longitude) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            ids[size] = id;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    size--;
+                    ids[i] = ids[size];
+                    latitudes[i] = latitudes[size];
+                    longitudes[i] = longitudes[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private final Map<Long, Cell> cells = new HashMap<>();
+    // bounds of the occupied cells, so a k-nearest search knows when to stop
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minColumn = Integer.MAX_VALUE;
+    private int maxColumn = Integer.MIN_VALUE;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    public void add(SubletListing listing) {
+        lock.writeLock().lock();
+        try {
+            insert(listing);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addAll(List<SubletListing> listings) {
+        lock.writeLock().lock();
+        try {
+            for (SubletListing listing : listings) {
+                insert(listing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(SubletListing listing) {
+        if (!listing.hasCoordinates()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Cell cell = cells.get(key(row(listing.getLatitude()), column(listing.getLongitude())));
+            if (cell != null) {
+                cell.remove(listing.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of the listings within radiusKm of the point, nearest first
+     */
+    int[] within(double latitude, double longitude, double radiusKm) {
+        lock.readLock().lock();
+        try {
+            double latitudeSpan = radiusKm / KM_PER_DEGREE;
+            double widestCos = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(latitude) + latitudeSpan)));
+            double longitudeSpan = radiusKm / (KM_PER_DEGREE * widestCos);
+            int fromRow = Math.max(row(latitude - latitudeSpan), minRow);
+            int toRow = Math.min(row(latitude + latitudeSpan), maxRow);
+            int fromColumn = Math.max(column(longitude - longitudeSpan), minColumn);
+            int toColumn = Math.min(column(longitude + longitudeSpan), maxColumn);
+
+            // distance in the high half, id in the low half: sorting the longs sorts by distance
+            long[] found = new long[16];
+            int count = 0;
+            for (int row = fromRow; row <= toRow; row++) {
+                for (int column = fromColumn; column <= toColumn; column++) {
+                    Cell cell = cells.get(key(row, column));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size; i++) {
+                        double distance = distanceKm(latitude, longitude, cell.latitudes[i], cell.longitudes[i]);
+                        if (distance <= radiusKm) {
+                            if (count == found.length) {
+                                found = Arrays.copyOf(found, count * 2);
+                            }
+                            found[count++] = (long) Float.floatToIntBits((float) distance) << 32 | cell.ids[i];
+                        }
+                    }
+                }
+            }
+            Arrays.sort(found, 0, count);
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = (int) found[i];
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param filter only listings whose id passes are considered
+     * @return ids of the k listings nearest the point, nearest first
+     */
+    int[] nearest(double latitude, double longitude, int k, IntPredicate filter) {
+        lock.readLock().lock();
+        try {
+            if (k <= 0 || minRow > maxRow) {
+                return new int[0];
+            }
+            // max-heap on distance, so the worst of the best k is at the root
+            double[] heapDistances = new double[k];
+            int[] heapIds = new int[k];
+            int heapSize = 0;
+
+            // no point in ring r + 1 is closer than r cells in either direction
+            double maxLatitude = Math.max(Math.abs(minRow * CELL_DEGREES), Math.abs((maxRow + 1) * CELL_DEGREES));
+            double cellKm = CELL_DEGREES * KM_PER_DEGREE * Math.cos(Math.toRadians(Math.min(89.0, maxLatitude)));
+
+            int centerRow = row(latitude);
+            int centerColumn = column(longitude);
+            for (int ring = 0; ; ring++) {
+                for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                    boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                    int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                    for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                        Cell cell = cells.get(key(row, column));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (int i = 0; i < cell.size; i++) {
+                            int id = cell.ids[i];
+                            if (!filter.test(id)) {
+                                continue;
+                            }
+                            double distance = distanceKm(latitude, longitude, cell.latitudes[i], cell.longitudes[i]);
+                            if (heapSize < k) {
+                                heapIds[heapSize] = id;
+                                heapDistances[heapSize] = distance;
+                                siftUp(heapDistances, heapIds, heapSize++);
+                            } else if (distance < heapDistances[0]) {
+                                heapIds[0] = id;
+                                heapDistances[0] = distance;
+                                siftDown(heapDistances, heapIds, heapSize);
+                            }
+                        }
+                    }
+                }
+                boolean coversAll = centerRow - ring <= minRow && centerRow + ring >= maxRow
+                        && centerColumn - ring <= minColumn && centerColumn + ring >= maxColumn;
+                if (coversAll || (heapSize == k && ring * cellKm >= heapDistances[0])) {
+                    break;
+                }
+            }
+
+            int[] ids = new int[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                ids[i] = heapIds[0];
+                heapIds[0] = heapIds[i];
+                heapDistances[0] = heapDistances[i];
+                siftDown(heapDistances, heapIds, i);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Distance between two points, using the equirectangular approximation.
+     * At city scale it is off by well under a metre, and it is much cheaper
+     * than the haversine formula.
+     */
+    static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double x = Math.toRadians(longitude2 - longitude1) * Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+        double y = Math.toRadians(latitude2 - latitude1);
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_KM;
+    }
+
+    private void insert(SubletListing listing) {
+        if (!listing.hasCoordinates()) {
+            return;
+        }
+        int row = row(listing.getLatitude());
+        int column = column(listing.getLongitude());
+        cells.computeIfAbsent(key(row, column), k -> new Cell())
+                .add(listing.getId(), listing.getLatitude(), listing.getLongitude());
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minColumn = Math.min(minColumn, column);
+        maxColumn = Math.max(maxColumn, column);
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor(latitude / CELL_DEGREES);
+    }
+
+    private static int column(double longitude) {
+        return (int) Math.floor(longitude / CELL_DEGREES);
+    }
+
+    private static long key(int row, int column) {
+        return (long) row << 32 | (column & 0xFFFFFFFFL);
+    }
+
+    private static void siftUp(double[] distances, int[] ids, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (distances[parent] >= distances[i]) {
+                return;
+            }
+            swap(distances, ids, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(double[] distances, int[] ids, int size) {
+        int i = 0;
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && distances[left] > distances[largest]) {
+                largest = left;
+            }
+            if (right < size && distances[right] > distances[largest]) {
+                largest = right;
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(distances, ids, i, largest);
+            i = largest;
+        }
+    }
+
+    private static void swap(double[] distances, int[] ids, int a, int b) {
+        double distance = distances[a];
+        distances[a] = distances[b];
+        distances[b] = distance;
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+}
@@ -0,0 +1,164 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented copy of the listing catalog, maintained by SubletStorage.
+ * Each field lives in its own primitive array indexed by listing id:
+ * - prices and coordinates as doubles
+ * - locations and modes as int codes into small dictionaries
+ * - titles, descriptions and image paths as offset/length pairs into one
+ *   shared char heap; a length of -1 stands for null
+ * Analytics then run as tight loops over primitive arrays, with no pointer
+ * chasing and no boxing.
+ *
+ * The fixed-width columns are split into pages of 1024 rows, like the
+ * listings in CatalogSnapshot. A snapshot copies only the page table.
+ * Appends write past the end of every snapshot already handed out, so they
+ * never copy. An update copies the one page it lands in, and only if a
+ * snapshot still shares that page. Changed strings are appended to the heap
+ * rather than overwritten, so the heap is never copied for an update.
+ */
+class ListingColumns {
+
+    static final int PAGE_SHIFT = 10;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /** The fixed-width columns of 1024 consecutive rows. */
+    static final class Page {
+        final double[] prices = new double[PAGE_SIZE];
+        final double[] latitudes = new double[PAGE_SIZE];
+        final double[] longitudes = new double[PAGE_SIZE];
+        final boolean[] approximate = new boolean[PAGE_SIZE];
+        final int[] locationCodes = new int[PAGE_SIZE];
+        final int[] modeCodes = new int[PAGE_SIZE];
+        final int[] titleOffsets = new int[PAGE_SIZE];
+        final int[] titleLengths = new int[PAGE_SIZE];
+        final int[] descriptionOffsets = new int[PAGE_SIZE];
+        final int[] descriptionLengths = new int[PAGE_SIZE];
+        final int[] imagePathOffsets = new int[PAGE_SIZE];
+        final int[] imagePathLengths = new int[PAGE_SIZE];
+        // snapshot generation this page was created in; older pages may be shared
+        final long generation;
+
+        Page(long generation) {
+            this.generation = generation;
+        }
+
+        Page copy(long generation) {
+            Page copy = new Page(generation);
+            System.arraycopy(prices, 0, copy.prices, 0, PAGE_SIZE);
+            System.arraycopy(latitudes, 0, copy.latitudes, 0, PAGE_SIZE);
+            System.arraycopy(longitudes, 0, copy.longitudes, 0, PAGE_SIZE);
+            System.arraycopy(approximate, 0, copy.approximate, 0, PAGE_SIZE);
+            System.arraycopy(locationCodes, 0, copy.locationCodes, 0, PAGE_SIZE);
+            System.arraycopy(modeCodes, 0, copy.modeCodes, 0, PAGE_SIZE);
+            System.arraycopy(titleOffsets, 0, copy.titleOffsets, 0, PAGE_SIZE);
+            System.arraycopy(titleLengths, 0, copy.titleLengths, 0, PAGE_SIZE);
+            System.arraycopy(descriptionOffsets, 0, copy.descriptionOffsets, 0, PAGE_SIZE);
+            System.arraycopy(descriptionLengths, 0, copy.descriptionLengths, 0, PAGE_SIZE);
+            System.arraycopy(imagePathOffsets, 0, copy.imagePathOffsets, 0, PAGE_SIZE);
+            System.arraycopy(imagePathLengths, 0, copy.imagePathLengths, 0, PAGE_SIZE);
+            return copy;
+        }
+    }
+
+    private Page[] pages = new Page[1];
+    private int size;
+    // bumped by every snapshot; a page from an earlier generation is shared with one
+    private long generation;
+
+    private char[] heap = new char[4096];
+    private int heapSize;
+
+    private final List<String> locations = new ArrayList<>();
+    private final Map<String, Integer> locationCodesByName = new HashMap<>();
+    private final List<String> modes = new ArrayList<>();
+    private final Map<String, Integer> modeCodesByName = new HashMap<>();
+
+    void add(SubletListing listing) {
+        int row = listing.getId();
+        int page = row >>> PAGE_SHIFT;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+        }
+        if (pages[page] == null) {
+            pages[page] = new Page(generation);
+        }
+        // rows past the end of every snapshot, so even a shared page can take them
+        write(pages[page], row & PAGE_MASK, listing);
+        size = Math.max(size, row + 1);
+    }
+
+    void addAll(List<SubletListing> listings) {
+        for (SubletListing listing : listings) {
+            add(listing);
+        }
+    }
+
+    void update(SubletListing listing) {
+        int row = listing.getId();
+        int page = row >>> PAGE_SHIFT;
+        if (pages[page].generation != generation) {
+            pages[page] = pages[page].copy(generation);
+        }
+        write(pages[page], row & PAGE_MASK, listing);
+    }
+
+    /**
+     * @return an immutable view of the catalog as it is now
+     */
+    ColumnarSnapshot snapshot() {
+        ColumnarSnapshot snapshot = new ColumnarSnapshot(size, pages.clone(), heap,
+                locations.toArray(new String[0]), modes.toArray(new String[0]));
+        generation++;
+        return snapshot;
+    }
+
+    private void write(Page page, int slot, SubletListing listing) {
+        page.prices[slot] = listing.getPrice();
+        page.latitudes[slot] = listing.getLatitude();
+        page.longitudes[slot] = listing.getLongitude();
+        page.approximate[slot] = listing.isApproximateLocation();
+        page.locationCodes[slot] = code(listing.getLocation(), locations, locationCodesByName);
+        page.modeCodes[slot] = code(listing.getSubletMode(), modes, modeCodesByName);
+        page.titleOffsets[slot] = append(listing.getTitle());
+        page.titleLengths[slot] = length(listing.getTitle());
+        page.descriptionOffsets[slot] = append(listing.getDescription());
+        page.descriptionLengths[slot] = length(listing.getDescription());
+        page.imagePathOffsets[slot] = append(listing.getImagePath());
+        page.imagePathLengths[slot] = length(listing.getImagePath());
+    }
+
+    private int append(String value) {
+        int length = Math.max(length(value), 0);
+        int offset = heapSize;
+        if (offset + length > heap.length) {
+            heap = Arrays.copyOf(heap, Math.max(offset + length, heap.length * 2));
+        }
+        if (length > 0) {
+            value.getChars(0, length, heap, offset);
+        }
+        heapSize += length;
+        return offset;
+    }
+
+    private static int length(String value) {
+        return value == null ? -1 : value.length();
+    }
+
+    private static int code(String value, List<String> dictionary, Map<String, Integer> codes) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+}
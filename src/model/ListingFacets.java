@@ -0,0 +1,292 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facet counts over the listing catalog: how many listings have each
+ * location, each sublet mode and fall in each price bucket.
+ * Subscribes to SubletStorage and keeps, for every facet value, a running
+ * count plus a bitset of the listing ids that have it. Plain counts are
+ * read straight from the running totals. Combined counts such as
+ * "Allston + short + under $1500" AND the bitsets together instead of
+ * scanning listings. A distance limit comes from the spatial index as one
+ * more bitset.
+ *
+ * Listener callbacks run while SubletStorage holds its lock, so the lock
+ * order is always SubletStorage, then this class.
+ */
+public class ListingFacets {
+
+    /** Width of one price bucket, in dollars. */
+    public static final int BUCKET_WIDTH = 250;
+    /** Number of price buckets; the last one holds every higher price. */
+    public static final int BUCKETS = 20;
+
+    private static class Facet {
+        final BitSet ids = new BitSet();
+        int count;
+    }
+
+    private static final Map<String, Facet> locations = new HashMap<>();
+    private static final Map<String, Facet> modes = new HashMap<>();
+    private static final Facet[] buckets = new Facet[BUCKETS];
+    // price per listing id, for the buckets a price range only partly covers
+    private static double[] prices = new double[64];
+    private static int total;
+
+    static {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new Facet();
+        }
+        SubletStorage.addListener(new ListingListener() {
+            @Override
+            public void listingAdded(SubletListing listing) {
+                add(listing);
+            }
+
+            @Override
+            public void listingsAdded(List<SubletListing> listings) {
+                synchronized (ListingFacets.class) {
+                    for (SubletListing listing : listings) {
+                        add(listing);
+                    }
+                }
+            }
+
+            @Override
+            public void listingUpdated(SubletListing before, SubletListing after) {
+                remove(before);
+                add(after);
+            }
+        });
+    }
+
+    /**
+     * @return the bucket a price falls in
+     */
+    public static int bucket(double price) {
+        return (int) Math.max(0, Math.min(BUCKETS - 1, Math.floor(price / BUCKET_WIDTH)));
+    }
+
+    /**
+     * @return the lowest price in the given bucket
+     */
+    public static double bucketFloor(int bucket) {
+        return bucket == 0 ? 0 : (double) bucket * BUCKET_WIDTH;
+    }
+
+    /**
+     * @return number of listings per location, sorted by location
+     */
+    public static synchronized Map<String, Integer> locationCounts() {
+        return counts(locations, null);
+    }
+
+    /**
+     * @return number of listings per sublet mode, sorted by mode
+     */
+    public static synchronized Map<String, Integer> modeCounts() {
+        return counts(modes, null);
+    }
+
+    /**
+     * @return number of listings per price bucket
+     */
+    public static synchronized int[] bucketCounts() {
+        int[] counts = new int[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].count;
+        }
+        return counts;
+    }
+
+    /**
+     * @return number of listings matching the query
+     */
+    public static int count(ListingQuery query) {
+        BitSet near = near(query);
+        synchronized (ListingFacets.class) {
+            BitSet matching = matching(query.getLocation(), query.getMode(),
+                    query.getMinPrice(), query.getMaxPrice(), near);
+            return matching == null ? total : matching.cardinality();
+        }
+    }
+
+    /**
+     * Counts per location for a query, ignoring the query's own location, so
+     * a drop-down can show how many listings each choice would give.
+     *
+     * @return number of matching listings per location, sorted by location
+     */
+    public static Map<String, Integer> locationCounts(ListingQuery query) {
+        BitSet near = near(query);
+        synchronized (ListingFacets.class) {
+            return counts(locations, matching(null, query.getMode(),
+                    query.getMinPrice(), query.getMaxPrice(), near));
+        }
+    }
+
+    /**
+     * Like {@link #locationCounts(ListingQuery)}, per sublet mode, ignoring
+     * the query's own mode.
+     */
+    public static Map<String, Integer> modeCounts(ListingQuery query) {
+        BitSet near = near(query);
+        synchronized (ListingFacets.class) {
+            return counts(modes, matching(query.getLocation(), null,
+                    query.getMinPrice(), query.getMaxPrice(), near));
+        }
+    }
+
+    /**
+     * @return every location that has at least one listing, sorted
+     */
+    public static synchronized List<String> locations() {
+        return new ArrayList<>(counts(locations, null).keySet());
+    }
+
+    /**
+     * @return every sublet mode that has at least one listing, sorted
+     */
+    public static synchronized List<String> modes() {
+        return new ArrayList<>(counts(modes, null).keySet());
+    }
+
+    // counts per facet value within filter (null for no filter), sorted by value
+    private static Map<String, Integer> counts(Map<String, Facet> facets, BitSet filter) {
+        String[] values = facets.keySet().stream().filter(v -> v != null).sorted().toArray(String[]::new);
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (String value : values) {
+            Facet facet = facets.get(value);
+            if (filter == null) {
+                result.put(value, facet.count);
+            } else {
+                BitSet both = (BitSet) facet.ids.clone();
+                both.and(filter);
+                result.put(value, both.cardinality());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looked up from the spatial index before taking this class's lock,
+     * which keeps the lock order SubletStorage, then this class.
+     *
+     * @return ids within the query's distance limit, or null if it has none
+     */
+    private static BitSet near(ListingQuery query) {
+        if (!query.hasRadius()) {
+            return null;
+        }
+        BitSet ids = new BitSet();
+        for (int id : SubletStorage.withinIds(query)) {
+            ids.set(id);
+        }
+        return ids;
+    }
+
+    /**
+     * @param near ids within a distance limit, or null for no limit
+     * @return ids matching every given constraint, or null if nothing is constrained
+     */
+    private static BitSet matching(String location, String mode, double minPrice, double maxPrice, BitSet near) {
+        BitSet result = null;
+        if (near != null) {
+            result = intersect(result, near);
+        }
+        if (location != null) {
+            result = intersect(result, facetIds(locations, location));
+        }
+        if (mode != null) {
+            result = intersect(result, facetIds(modes, mode));
+        }
+        if (minPrice > 0 || maxPrice != Double.MAX_VALUE) {
+            result = intersect(result, priceRange(minPrice, maxPrice));
+        }
+        return result;
+    }
+
+    private static BitSet facetIds(Map<String, Facet> facets, String value) {
+        Facet facet = facets.get(value);
+        return facet == null ? new BitSet() : facet.ids;
+    }
+
+    private static BitSet intersect(BitSet result, BitSet ids) {
+        if (result == null) {
+            return (BitSet) ids.clone();
+        }
+        result.and(ids);
+        return result;
+    }
+
+    // whole buckets are OR-ed in; only the edge buckets have prices checked one by one
+    private static BitSet priceRange(double minPrice, double maxPrice) {
+        BitSet result = new BitSet();
+        if (minPrice > maxPrice) {
+            return result;
+        }
+        int first = bucket(minPrice);
+        int last = bucket(maxPrice);
+        for (int b = first; b <= last; b++) {
+            BitSet ids = buckets[b].ids;
+            boolean coversFloor = b > first || bucketFloor(b) >= minPrice;
+            boolean coversCeiling = b < last || (b < BUCKETS - 1 && bucketFloor(b + 1) <= maxPrice)
+                    || maxPrice == Double.MAX_VALUE;
+            if (coversFloor && coversCeiling) {
+                result.or(ids);
+                continue;
+            }
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                if (prices[id] >= minPrice && prices[id] <= maxPrice) {
+                    result.set(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static synchronized void add(SubletListing listing) {
+        int id = listing.getId();
+        if (id >= prices.length) {
+            prices = Arrays.copyOf(prices, Math.max(id + 1, prices.length * 2));
+        }
+        prices[id] = listing.getPrice();
+        set(locations.computeIfAbsent(listing.getLocation(), k -> new Facet()), id);
+        set(modes.computeIfAbsent(listing.getSubletMode(), k -> new Facet()), id);
+        set(buckets[bucket(listing.getPrice())], id);
+        total++;
+    }
+
+    private static synchronized void remove(SubletListing listing) {
+        int id = listing.getId();
+        clear(locations, listing.getLocation(), id);
+        clear(modes, listing.getSubletMode(), id);
+        Facet bucket = buckets[bucket(listing.getPrice())];
+        bucket.ids.clear(id);
+        bucket.count--;
+        total--;
+    }
+
+    private static void set(Facet facet, int id) {
+        facet.ids.set(id);
+        facet.count++;
+    }
+
+    // drops the value once no listing has it, so it leaves the drop-downs
+    private static void clear(Map<String, Facet> facets, String value, int id) {
+        Facet facet = facets.get(value);
+        if (facet != null) {
+            facet.ids.clear(id);
+            if (--facet.count == 0) {
+                facets.remove(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,845 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bulk import of listings from a CSV or JSON Lines file, one listing per line.
+ * - CSV: a header row names the columns (title, location, price,
+ *   subletMode, and optionally description, imagePath, latitude and
+ *   longitude; any order, unknown ones ignored).
+ *   Fields may be quoted, with "" for a quote inside; a quoted field can't
+ *   span lines.
+ * - JSONL: one flat object per line with the same keys.
+ * A sublet mode is "short" or "long"; prices must be above 0 and at most
+ * 100,000. Latitude and longitude are degrees and come together; a listing
+ * without them is placed approximately inside its neighbourhood.
+ *
+ * The file is split into chunks at line boundaries. Each chunk is
+ * memory-mapped and parsed on the common ForkJoin pool, straight from the
+ * mapped bytes. Repeated values (locations, modes, descriptions, image paths)
+ * are dictionary-encoded, so a million listings share one String per
+ * distinct value instead of holding a copy each. Rows that fail validation
+ * are counted and reported with their line numbers, and the rest are
+ * imported.
+ *
+ * Parsed chunks are inserted in file order through
+ * {@link SubletStorage#addListings}, in batches of up to 65536 listings,
+ * while later chunks are still being parsed. Each batch is one catalog
+ * version and one notification per listener.
+ */
+public class ListingImporter {
+
+    public enum Format {
+        CSV, JSONL;
+
+        /** @return the format matching the file's extension; CSV unless it ends in .jsonl, .ndjson or .json */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    /** What an import did and how fast. */
+    public static class Result {
+        private final int imported;
+        private final int rejected;
+        private final List<String> errors;
+        private final long bytes;
+        private final long elapsedNanos;
+        private final long insertNanos;
+
+        Result(int imported, int rejected, List<String> errors, long bytes, long elapsedNanos, long insertNanos) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.insertNanos = insertNanos;
+        }
+
+        public int getImported() { return imported; }
+        public int getRejected() { return rejected; }
+        /** @return the first rejected rows, as "line N: reason" */
+        public List<String> getErrors() { return errors; }
+        public long getBytes() { return bytes; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        /** @return time spent adding batches to the catalog, which overlaps parsing */
+        public long getInsertNanos() { return insertNanos; }
+
+        public double listingsPerSecond() {
+            return imported / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %,d listings (%,d rejected) from %.1f MB in %.2f s: %,.0f listings/s, %.1f MB/s, %.2f s inserting",
+                    imported, rejected, bytes / 1e6, elapsedNanos / 1e9, listingsPerSecond(),
+                    bytes / 1e6 / (elapsedNanos / 1e9), insertNanos / 1e9);
+        }
+    }
+
+    private static final int TITLE = 0;
+    private static final int LOCATION = 1;
+    private static final int PRICE = 2;
+    private static final int DESCRIPTION = 3;
+    private static final int MODE = 4;
+    private static final int IMAGE = 5;
+    private static final int LATITUDE = 6;
+    private static final int LONGITUDE = 7;
+    private static final String[] FIELD_NAMES = { "title", "location", "price", "description", "subletMode", "imagePath",
+            "latitude", "longitude" };
+    private static final byte[][] FIELD_KEYS = new byte[FIELD_NAMES.length][];
+
+    static {
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            FIELD_KEYS[i] = FIELD_NAMES[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    // bytes per parse task; small enough that insertion can start early
+    private static final int CHUNK_BYTES = 4 << 20;
+    // listings per catalog version
+    private static final int BATCH = 65_536;
+    // rejected rows listed in the result; the rest are only counted
+    private static final int MAX_ERRORS = 20;
+    private static final int MAX_TITLE = 200;
+    private static final double MAX_PRICE = 100_000;
+
+    private static final double[] POW10 = new double[16];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private ListingImporter() {
+    }
+
+    /**
+     * Imports a file, picking the format from its extension.
+     */
+    public static Result importFile(Path file) throws IOException {
+        return importFile(file, Format.of(file));
+    }
+
+    /**
+     * Imports every valid listing in the file and reports the rest.
+     *
+     * @throws IOException if the file can't be read, or a CSV file has no usable header
+     */
+    public static Result importFile(Path file, Format format) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long bodyStart = 0;
+            int[] columns = null;
+            int headerLines = 0;
+            if (format == Format.CSV) {
+                bodyStart = nextLine(channel, 0, size);
+                columns = header(channel, bodyStart);
+                headerLines = 1;
+            }
+
+            Map<String, String> values = new ConcurrentHashMap<>();
+            long[] bounds = chunkBounds(channel, bodyStart, size);
+            List<CompletableFuture<Chunk>> chunks = new ArrayList<>(bounds.length - 1);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                int[] csvColumns = columns;
+                chunks.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return parse(channel, from, to, csvColumns, values);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+
+            int imported = 0;
+            int rejected = 0;
+            int lines = headerLines;
+            long insertNanos = 0;
+            List<String> errors = new ArrayList<>();
+            List<SubletListing> batch = new ArrayList<>(BATCH);
+            for (CompletableFuture<Chunk> future : chunks) {
+                Chunk chunk = join(future);
+                for (int i = 0; i < chunk.errorLines.size() && errors.size() < MAX_ERRORS; i++) {
+                    errors.add("line " + (lines + chunk.errorLines.get(i)) + ": " + chunk.errorMessages.get(i));
+                }
+                rejected += chunk.rejected;
+                lines += chunk.lines;
+                for (SubletListing listing : chunk.listings) {
+                    batch.add(listing);
+                    if (batch.size() == BATCH) {
+                        insertNanos += insert(batch);
+                        imported += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            insertNanos += insert(batch);
+            imported += batch.size();
+            return new Result(imported, rejected, Collections.unmodifiableList(errors), size,
+                    System.nanoTime() - start, insertNanos);
+        }
+    }
+
+    private static long insert(List<SubletListing> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        SubletStorage.addListings(batch);
+        return System.nanoTime() - start;
+    }
+
+    private static Chunk join(CompletableFuture<Chunk> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // chunk starts: every CHUNK_BYTES, moved forward to the start of the next line
+    private static long[] chunkBounds(FileChannel channel, long from, long size) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(from);
+        long position = from;
+        while (position + CHUNK_BYTES < size) {
+            position = nextLine(channel, position + CHUNK_BYTES, size);
+            bounds.add(position);
+        }
+        if (position < size) {
+            bounds.add(size);
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // position just past the first newline at or after from, or size if there is none
+    private static long nextLine(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // field index of each CSV column, or -1 for columns that aren't imported
+    private static int[] header(FileChannel channel, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) end);
+        channel.read(buffer, 0);
+        Row row = new Row();
+        row.load(buffer.array(), 0, trimLine(buffer.array(), 0, (int) end));
+        List<String> names = new ArrayList<>();
+        String error = row.splitCsv(names);
+        if (error != null) {
+            throw new IOException("Bad CSV header: " + error);
+        }
+        int[] columns = new int[names.size()];
+        boolean[] seen = new boolean[FIELD_NAMES.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = -1;
+            for (int f = 0; f < FIELD_NAMES.length; f++) {
+                if (FIELD_NAMES[f].equalsIgnoreCase(names.get(c).strip())) {
+                    columns[c] = f;
+                    seen[f] = true;
+                }
+            }
+        }
+        if (!seen[TITLE] || !seen[LOCATION] || !seen[PRICE] || !seen[MODE]) {
+            throw new IOException("CSV header needs title, location, price and subletMode columns: " + names);
+        }
+        return columns;
+    }
+
+    // length of the line without its trailing newline / carriage return
+    private static int trimLine(byte[] bytes, int from, int to) {
+        while (to > from && (bytes[to - 1] == '\n' || bytes[to - 1] == '\r')) {
+            to--;
+        }
+        return to - from;
+    }
+
+    private static Chunk parse(FileChannel channel, long from, long to, int[] columns,
+            Map<String, String> values) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        Chunk chunk = new Chunk();
+        Row row = new Row();
+        Dictionary dictionary = new Dictionary(values);
+        byte[] line = new byte[1024];
+        int limit = buffer.limit();
+        int position = 0;
+        while (position < limit) {
+            int end = position;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            int length = end - position;
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            buffer.get(position, line, 0, length);
+            position = end + 1;
+            chunk.lines++;
+
+            length = trimLine(line, 0, length);
+            if (isBlank(line, length)) {
+                continue;
+            }
+            row.load(line, 0, length);
+            String error = columns != null ? row.parseCsv(columns) : row.parseJson();
+            SubletListing listing = null;
+            if (error == null) {
+                listing = row.toListing(dictionary);
+                error = row.error;
+            }
+            if (error != null) {
+                chunk.reject(error);
+            } else {
+                chunk.listings.add(listing);
+            }
+        }
+        return chunk;
+    }
+
+    private static boolean isBlank(byte[] line, int length) {
+        for (int i = 0; i < length; i++) {
+            if (line[i] != ' ' && line[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // what one parse task produced; line numbers are relative to the chunk
+    private static final class Chunk {
+        final List<SubletListing> listings = new ArrayList<>();
+        final List<Integer> errorLines = new ArrayList<>();
+        final List<String> errorMessages = new ArrayList<>();
+        int lines;
+        int rejected;
+
+        void reject(String message) {
+            rejected++;
+            if (errorLines.size() < MAX_ERRORS) {
+                errorLines.add(lines);
+                errorMessages.add(message);
+            }
+        }
+    }
+
+    /**
+     * One line being parsed. Field values are unescaped into a scratch array
+     * reused from line to line, so parsing allocates only the Strings that
+     * end up in the listing.
+     */
+    private static final class Row {
+        private byte[] in;
+        private int inPosition;
+        private int inEnd;
+
+        private byte[] values = new byte[1024];
+        private int used;
+        private final int[] start = new int[FIELD_NAMES.length];
+        // -1 for a field the line doesn't have
+        private final int[] length = new int[FIELD_NAMES.length];
+        String error;
+
+        void load(byte[] bytes, int from, int length) {
+            in = bytes;
+            inPosition = from;
+            inEnd = from + length;
+            used = 0;
+            error = null;
+            Arrays.fill(this.length, -1);
+        }
+
+        String parseCsv(int[] columns) {
+            for (int column = 0; ; column++) {
+                int field = column < columns.length ? columns[column] : -1;
+                int valueStart = used;
+                String problem = csvField();
+                if (problem != null) {
+                    return problem;
+                }
+                if (field >= 0) {
+                    start[field] = valueStart;
+                    length[field] = used - valueStart;
+                } else {
+                    used = valueStart;
+                }
+                if (inPosition >= inEnd) {
+                    return null;
+                }
+                inPosition++; // the comma
+            }
+        }
+
+        // header names, for the same quoting rules as the rows
+        String splitCsv(List<String> names) {
+            while (true) {
+                int valueStart = used;
+                String problem = csvField();
+                if (problem != null) {
+                    return problem;
+                }
+                names.add(new String(values, valueStart, used - valueStart, StandardCharsets.UTF_8));
+                if (inPosition >= inEnd) {
+                    return null;
+                }
+                inPosition++;
+            }
+        }
+
+        // one field up to the next comma or the end of the line, unescaped into values
+        private String csvField() {
+            if (inPosition < inEnd && in[inPosition] == '"') {
+                inPosition++;
+                while (true) {
+                    if (inPosition >= inEnd) {
+                        return "unterminated quoted field";
+                    }
+                    byte b = in[inPosition++];
+                    if (b == '"') {
+                        if (inPosition < inEnd && in[inPosition] == '"') {
+                            put(b);
+                            inPosition++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        put(b);
+                    }
+                }
+                if (inPosition < inEnd && in[inPosition] != ',') {
+                    return "text after closing quote";
+                }
+                return null;
+            }
+            while (inPosition < inEnd && in[inPosition] != ',') {
+                put(in[inPosition++]);
+            }
+            return null;
+        }
+
+        String parseJson() {
+            skipSpace();
+            if (!consume('{')) {
+                return "expected a JSON object";
+            }
+            skipSpace();
+            if (consume('}')) {
+                return trailing();
+            }
+            while (true) {
+                skipSpace();
+                int keyStart = used;
+                if (!consume('"')) {
+                    return "expected a quoted key";
+                }
+                String problem = jsonString();
+                if (problem != null) {
+                    return problem;
+                }
+                int field = fieldOf(keyStart, used - keyStart);
+                used = keyStart;
+                skipSpace();
+                if (!consume(':')) {
+                    return "expected ':' after key";
+                }
+                skipSpace();
+                int valueStart = used;
+                if (inPosition >= inEnd) {
+                    return "missing value";
+                }
+                byte first = in[inPosition];
+                if (first == '"') {
+                    inPosition++;
+                    problem = jsonString();
+                    if (problem != null) {
+                        return problem;
+                    }
+                } else if (first == '{' || first == '[') {
+                    return "nested values are not supported";
+                } else {
+                    while (inPosition < inEnd && in[inPosition] != ',' && in[inPosition] != '}'
+                            && in[inPosition] != ' ' && in[inPosition] != '\t') {
+                        put(in[inPosition++]);
+                    }
+                    if (used - valueStart == 4 && matches(valueStart, "null")) {
+                        used = valueStart;
+                        valueStart = -1;
+                    }
+                }
+                if (field >= 0 && valueStart >= 0) {
+                    start[field] = valueStart;
+                    length[field] = used - valueStart;
+                } else if (valueStart >= 0) {
+                    used = valueStart;
+                }
+                skipSpace();
+                if (consume('}')) {
+                    return trailing();
+                }
+                if (!consume(',')) {
+                    return "expected ',' or '}'";
+                }
+            }
+        }
+
+        // the body of a JSON string, after its opening quote
+        private String jsonString() {
+            while (true) {
+                if (inPosition >= inEnd) {
+                    return "unterminated string";
+                }
+                byte b = in[inPosition++];
+                if (b == '"') {
+                    return null;
+                }
+                if (b != '\\') {
+                    put(b);
+                    continue;
+                }
+                if (inPosition >= inEnd) {
+                    return "unterminated string";
+                }
+                byte escape = in[inPosition++];
+                switch (escape) {
+                    case '"', '\\', '/' -> put(escape);
+                    case 'n' -> put((byte) '\n');
+                    case 't' -> put((byte) '\t');
+                    case 'r' -> put((byte) '\r');
+                    case 'b' -> put((byte) '\b');
+                    case 'f' -> put((byte) '\f');
+                    case 'u' -> {
+                        int c = hex4();
+                        if (c < 0) {
+                            return "bad \\u escape";
+                        }
+                        if (Character.isHighSurrogate((char) c) && inPosition + 6 <= inEnd
+                                && in[inPosition] == '\\' && in[inPosition + 1] == 'u') {
+                            inPosition += 2;
+                            int low = hex4();
+                            if (low < 0 || !Character.isLowSurrogate((char) low)) {
+                                return "bad surrogate pair";
+                            }
+                            c = Character.toCodePoint((char) c, (char) low);
+                        }
+                        putCodePoint(c);
+                    }
+                    default -> {
+                        return "bad escape \\" + (char) escape;
+                    }
+                }
+            }
+        }
+
+        private int hex4() {
+            if (inPosition + 4 > inEnd) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(in[inPosition++], 16);
+                if (digit < 0) {
+                    return -1;
+                }
+                value = value << 4 | digit;
+            }
+            return value;
+        }
+
+        private void putCodePoint(int c) {
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xC0 | c >> 6));
+                put((byte) (0x80 | c & 0x3F));
+            } else if (c < 0x10000) {
+                put((byte) (0xE0 | c >> 12));
+                put((byte) (0x80 | c >> 6 & 0x3F));
+                put((byte) (0x80 | c & 0x3F));
+            } else {
+                put((byte) (0xF0 | c >> 18));
+                put((byte) (0x80 | c >> 12 & 0x3F));
+                put((byte) (0x80 | c >> 6 & 0x3F));
+                put((byte) (0x80 | c & 0x3F));
+            }
+        }
+
+        private String trailing() {
+            skipSpace();
+            return inPosition < inEnd ? "text after the object" : null;
+        }
+
+        private void skipSpace() {
+            while (inPosition < inEnd && (in[inPosition] == ' ' || in[inPosition] == '\t')) {
+                inPosition++;
+            }
+        }
+
+        private boolean consume(char c) {
+            if (inPosition < inEnd && in[inPosition] == c) {
+                inPosition++;
+                return true;
+            }
+            return false;
+        }
+
+        private void put(byte b) {
+            if (used == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[used++] = b;
+        }
+
+        private int fieldOf(int from, int count) {
+            for (int f = 0; f < FIELD_KEYS.length; f++) {
+                if (Arrays.equals(values, from, from + count, FIELD_KEYS[f], 0, FIELD_KEYS[f].length)) {
+                    return f;
+                }
+            }
+            return -1;
+        }
+
+        private boolean matches(int from, String ascii) {
+            for (int i = 0; i < ascii.length(); i++) {
+                if (values[from + i] != ascii.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Validates the parsed fields and builds the listing; sets error and
+         * returns null if a field is missing or out of range.
+         */
+        SubletListing toListing(Dictionary dictionary) {
+            trim(TITLE);
+            trim(LOCATION);
+            trim(PRICE);
+            trim(MODE);
+            trim(LATITUDE);
+            trim(LONGITUDE);
+            if (length[TITLE] <= 0) {
+                error = "missing title";
+                return null;
+            }
+            String title = new String(values, start[TITLE], length[TITLE], StandardCharsets.UTF_8);
+            if (title.length() > MAX_TITLE) {
+                error = "title longer than " + MAX_TITLE + " characters";
+                return null;
+            }
+            if (length[LOCATION] <= 0) {
+                error = "missing location";
+                return null;
+            }
+            if (length[PRICE] <= 0) {
+                error = "missing price";
+                return null;
+            }
+            double price = parsePrice(values, start[PRICE], length[PRICE]);
+            if (Double.isNaN(price)) {
+                error = "price is not a number: " + text(PRICE);
+                return null;
+            }
+            if (price <= 0 || price > MAX_PRICE) {
+                error = "price out of range: " + text(PRICE);
+                return null;
+            }
+            String mode;
+            if (length[MODE] <= 0) {
+                error = "missing sublet mode";
+                return null;
+            } else if (equalsIgnoreCase(MODE, "short")) {
+                mode = "short";
+            } else if (equalsIgnoreCase(MODE, "long")) {
+                mode = "long";
+            } else {
+                error = "sublet mode must be short or long: " + text(MODE);
+                return null;
+            }
+            double latitude = Double.NaN;
+            double longitude = Double.NaN;
+            if (length[LATITUDE] > 0 || length[LONGITUDE] > 0) {
+                if (length[LATITUDE] <= 0 || length[LONGITUDE] <= 0) {
+                    error = "latitude and longitude go together";
+                    return null;
+                }
+                latitude = parsePrice(values, start[LATITUDE], length[LATITUDE]);
+                longitude = parsePrice(values, start[LONGITUDE], length[LONGITUDE]);
+                if (!(latitude >= -90 && latitude <= 90)) {
+                    error = "latitude out of range: " + text(LATITUDE);
+                    return null;
+                }
+                if (!(longitude >= -180 && longitude <= 180)) {
+                    error = "longitude out of range: " + text(LONGITUDE);
+                    return null;
+                }
+            }
+            String location = dictionary.get(values, start[LOCATION], length[LOCATION]);
+            String description = length[DESCRIPTION] < 0 ? ""
+                    : dictionary.get(values, start[DESCRIPTION], length[DESCRIPTION]);
+            String imagePath = length[IMAGE] <= 0 ? null : dictionary.get(values, start[IMAGE], length[IMAGE]);
+            return new SubletListing(title, location, price, description, mode, imagePath, latitude, longitude);
+        }
+
+        private void trim(int field) {
+            if (length[field] < 0) {
+                return;
+            }
+            while (length[field] > 0 && isSpace(values[start[field]])) {
+                start[field]++;
+                length[field]--;
+            }
+            while (length[field] > 0 && isSpace(values[start[field] + length[field] - 1])) {
+                length[field]--;
+            }
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+
+        private boolean equalsIgnoreCase(int field, String ascii) {
+            if (length[field] != ascii.length()) {
+                return false;
+            }
+            for (int i = 0; i < ascii.length(); i++) {
+                if (Character.toLowerCase(values[start[field] + i]) != ascii.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String text(int field) {
+            return new String(values, start[field], Math.min(length[field], 40), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Plain decimals such as 1234.56 are parsed without allocating: the
+     * digits fit a long and the power of ten is exact, so one division gives
+     * the correctly rounded double. Anything else goes to Double.parseDouble.
+     *
+     * @return the number, or NaN if it isn't one
+     */
+    static double parsePrice(byte[] bytes, int from, int length) {
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean plain = length > 0;
+        for (int i = from; i < from + length && plain; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                plain = false;
+            }
+        }
+        if (plain && digits > 0 && digits <= 15) {
+            return scale <= 0 ? mantissa : mantissa / POW10[scale];
+        }
+        try {
+            return Double.parseDouble(new String(bytes, from, length, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Per-chunk cache from field bytes to the canonical String for them, so a
+     * repeated value is decoded once per chunk and shared across the import.
+     * An open-addressing table on the raw bytes; once full it stops caching
+     * and decodes directly, which keeps a column of unique values cheap.
+     */
+    private static final class Dictionary {
+        private static final int SLOTS = 8192;
+        private static final int MAX_ENTRIES = SLOTS / 2;
+
+        private final Map<String, String> shared;
+        private final byte[][] keys = new byte[SLOTS][];
+        private final String[] values = new String[SLOTS];
+        private int size;
+
+        Dictionary(Map<String, String> shared) {
+            this.shared = shared;
+        }
+
+        String get(byte[] bytes, int from, int length) {
+            if (length == 0) {
+                return "";
+            }
+            int hash = 1;
+            for (int i = from; i < from + length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int slot = (hash ^ hash >>> 16) & (SLOTS - 1);
+            while (keys[slot] != null) {
+                if (Arrays.equals(keys[slot], 0, keys[slot].length, bytes, from, from + length)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & (SLOTS - 1);
+            }
+            String value = new String(bytes, from, length, StandardCharsets.UTF_8);
+            if (size == MAX_ENTRIES) {
+                return value;
+            }
+            String canonical = shared.putIfAbsent(value, value);
+            if (canonical == null) {
+                canonical = value;
+            }
+            keys[slot] = Arrays.copyOfRange(bytes, from, from + length);
+            values[slot] = canonical;
+            size++;
+            return canonical;
+        }
+    }
+}
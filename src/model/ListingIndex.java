@@ -0,0 +1,213 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Secondary index over the listing catalog, maintained by SubletStorage,
+ * partitioned into one shard per region (listing location). Each shard keeps
+ * its listing ids sorted by price under its own read-write lock.
+ * - A single-region query touches only its own shard: a hash lookup plus
+ *   two binary searches, O(log n + k).
+ * - An "All" query is scattered over every shard and gathered by merging
+ *   the price-sorted slices pairwise. Above a size threshold, that merge
+ *   tree runs on the ForkJoin common pool, so shards are read and merged
+ *   in parallel.
+ * - With a limit, each shard and each merge keeps only the cheapest
+ *   entries, so a top-k query never copies more than k entries per shard.
+ *
+ * A write locks only its region's shard and shifts only that shard's
+ * arrays, so readers of other regions never wait on it.
+ */
+class ListingIndex implements CatalogIndex {
+
+    // listings without a location are only reachable through "All" queries
+    private static final String NO_LOCATION = "";
+    // below this many listings, scatter-gather runs on the calling thread
+    private static final int PARALLEL_THRESHOLD = 50_000;
+
+    private static class Shard {
+        final PriceIndex byPrice = new PriceIndex();
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        PriceIndex.Slice slice(ListingQuery query, IntPredicate filter, int limit) {
+            lock.readLock().lock();
+            try {
+                return byPrice.slice(query.getMinPrice(), query.getMaxPrice(), filter, limit);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    // scatter-gather over shards [from, to): split in halves, query both, merge
+    private static class Gather extends RecursiveTask<PriceIndex.Slice> {
+        private final Shard[] shards;
+        private final int from;
+        private final int to;
+        private final ListingQuery query;
+        private final IntPredicate filter;
+        private final int limit;
+        // the thread that asked; a cancelled background query interrupts it, not the pool's workers
+        private final Thread caller;
+
+        Gather(Shard[] shards, int from, int to, ListingQuery query, IntPredicate filter, int limit, Thread caller) {
+            this.shards = shards;
+            this.from = from;
+            this.to = to;
+            this.query = query;
+            this.filter = filter;
+            this.limit = limit;
+            this.caller = caller;
+        }
+
+        @Override
+        protected PriceIndex.Slice compute() {
+            if (caller.isInterrupted()) {
+                throw new CancellationException("Query interrupted");
+            }
+            if (to - from == 1) {
+                return shards[from].slice(query, filter, limit);
+            }
+            int mid = (from + to) >>> 1;
+            Gather left = new Gather(shards, from, mid, query, filter, limit, caller);
+            left.fork();
+            PriceIndex.Slice right = new Gather(shards, mid, to, query, filter, limit, caller).compute();
+            return PriceIndex.merge(left.join(), right, limit);
+        }
+    }
+
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    @Override
+    public void add(SubletListing listing) {
+        Shard shard = shards.computeIfAbsent(key(listing.getLocation()), k -> new Shard());
+        shard.lock.writeLock().lock();
+        try {
+            shard.byPrice.add(listing.getPrice(), listing.getId());
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+        size.incrementAndGet();
+    }
+
+    @Override
+    public void remove(SubletListing listing) {
+        Shard shard = shards.get(key(listing.getLocation()));
+        if (shard == null) {
+            return;
+        }
+        shard.lock.writeLock().lock();
+        try {
+            int before = shard.byPrice.size();
+            shard.byPrice.remove(listing.getPrice(), listing.getId());
+            size.addAndGet(shard.byPrice.size() - before);
+        } finally {
+            shard.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a batch of listings, e.g. the whole catalog on first use.
+     */
+    @Override
+    public void addAll(List<SubletListing> listings) {
+        Map<String, List<SubletListing>> grouped = new HashMap<>();
+        for (SubletListing listing : listings) {
+            grouped.computeIfAbsent(key(listing.getLocation()), k -> new ArrayList<>()).add(listing);
+        }
+        for (Map.Entry<String, List<SubletListing>> entry : grouped.entrySet()) {
+            Shard shard = shards.computeIfAbsent(entry.getKey(), k -> new Shard());
+            shard.lock.writeLock().lock();
+            try {
+                addAll(shard.byPrice, entry.getValue());
+            } finally {
+                shard.lock.writeLock().unlock();
+            }
+        }
+        size.addAndGet(listings.size());
+    }
+
+    private static void addAll(PriceIndex index, List<SubletListing> listings) {
+        double[] prices = new double[listings.size()];
+        int[] ids = new int[listings.size()];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = listings.get(i).getPrice();
+            ids[i] = listings.get(i).getId();
+        }
+        index.addAll(prices, ids, prices.length);
+    }
+
+    /**
+     * @return cheapest and most expensive price at the location, or NaN if it has no listings
+     */
+    double minPrice(String location) {
+        Shard shard = shards.get(key(location));
+        if (shard == null) {
+            return Double.NaN;
+        }
+        shard.lock.readLock().lock();
+        try {
+            return shard.byPrice.minPrice();
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    double maxPrice(String location) {
+        Shard shard = shards.get(key(location));
+        if (shard == null) {
+            return Double.NaN;
+        }
+        shard.lock.readLock().lock();
+        try {
+            return shard.byPrice.maxPrice();
+        } finally {
+            shard.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of the listings in the query's location and price range,
+     *         cheapest first; the sublet mode is not checked
+     */
+    int[] query(ListingQuery query) {
+        return query(query, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param filter further check on each id, run inside the shards; null for none
+     * @param limit maximum number of ids to return
+     * @return ids of the cheapest listings in the query's location and price
+     *         range that pass the filter, cheapest first, ties by id
+     */
+    int[] query(ListingQuery query, IntPredicate filter, int limit) {
+        if (query.getLocation() != null) {
+            Shard shard = shards.get(key(query.getLocation()));
+            return shard == null ? new int[0] : shard.slice(query, filter, limit).ids();
+        }
+        Shard[] all = shards.values().toArray(new Shard[0]);
+        if (all.length == 0) {
+            return new int[0];
+        }
+        Gather gather = new Gather(all, 0, all.length, query, filter, limit, Thread.currentThread());
+        PriceIndex.Slice result = size.get() < PARALLEL_THRESHOLD || all.length == 1
+                ? gather.compute()
+                : ForkJoinPool.commonPool().invoke(gather);
+        return result.ids();
+    }
+
+    private static String key(String location) {
+        return location == null ? NO_LOCATION : location;
+    }
+}
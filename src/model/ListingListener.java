@@ -0,0 +1,31 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Receives changes to the listing catalog from SubletStorage.
+ * Called on the thread that made the change, after the catalog and its
+ * indexes have been updated.
+ */
+public interface ListingListener {
+
+    void listingAdded(SubletListing listing);
+
+    /**
+     * Called once for a batch of new listings, e.g. a bulk import, instead of
+     * once per listing. Override to take a lock or flush once per batch.
+     *
+     * @param listings the new listings, in id order
+     */
+    default void listingsAdded(List<SubletListing> listings) {
+        for (SubletListing listing : listings) {
+            listingAdded(listing);
+        }
+    }
+
+    /**
+     * @param before the listing as it was; no longer in the catalog
+     * @param after the listing that replaced it, with the same id
+     */
+    void listingUpdated(SubletListing before, SubletListing after);
+}
@@ -0,0 +1,106 @@
+package model;
+
+/**
+ * What the user is looking for: an optional location, an optional sublet
+ * mode, an inclusive price range and optionally a maximum distance from a
+ * point, such as a campus. Immutable.
+ */
+public class ListingQuery {
+
+    private static final ListingQuery ALL = new ListingQuery(null, 0, Double.MAX_VALUE);
+
+    private final String location;
+    private final String mode;
+    private final double minPrice;
+    private final double maxPrice;
+    // centre and radius of the distance limit; a NaN radius means no limit
+    private final double latitude;
+    private final double longitude;
+    private final double radiusKm;
+
+    /**
+     * @param location exact location to match, or null for every location
+     * @param minPrice inclusive price floor
+     * @param maxPrice inclusive price ceiling
+     */
+    public ListingQuery(String location, double minPrice, double maxPrice) {
+        this(location, null, minPrice, maxPrice);
+    }
+
+    /**
+     * @param location exact location to match, or null for every location
+     * @param mode exact sublet mode to match, or null for every mode
+     * @param minPrice inclusive price floor
+     * @param maxPrice inclusive price ceiling
+     */
+    public ListingQuery(String location, String mode, double minPrice, double maxPrice) {
+        this(location, mode, minPrice, maxPrice, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    private ListingQuery(String location, String mode, double minPrice, double maxPrice,
+            double latitude, double longitude, double radiusKm) {
+        this.location = location;
+        this.mode = mode;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radiusKm = radiusKm;
+    }
+
+    /**
+     * @return a copy of this query that also requires listings to lie within
+     *         radiusKm of the given point; listings without coordinates never match
+     */
+    public ListingQuery within(double latitude, double longitude, double radiusKm) {
+        return new ListingQuery(location, mode, minPrice, maxPrice, latitude, longitude, radiusKm);
+    }
+
+    /**
+     * @return a query matching every listing
+     */
+    public static ListingQuery all() {
+        return ALL;
+    }
+
+    public String getLocation() { return location; }
+    public String getMode() { return mode; }
+    public double getMinPrice() { return minPrice; }
+    public double getMaxPrice() { return maxPrice; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public double getRadiusKm() { return radiusKm; }
+
+    /**
+     * @return true if this query limits the distance from a point
+     */
+    public boolean hasRadius() {
+        return !Double.isNaN(radiusKm);
+    }
+
+    /**
+     * @return true if this query doesn't narrow the catalog at all
+     */
+    public boolean isAll() {
+        return location == null && mode == null && minPrice <= 0 && maxPrice == Double.MAX_VALUE && !hasRadius();
+    }
+
+    /**
+     * @return true if the listing satisfies this query
+     */
+    public boolean matches(SubletListing listing) {
+        double price = listing.getPrice();
+        return price >= minPrice && price <= maxPrice
+                && (location == null || location.equals(listing.getLocation()))
+                && (mode == null || mode.equals(listing.getSubletMode()))
+                && (!hasRadius() || isNear(listing.getLatitude(), listing.getLongitude()));
+    }
+
+    /**
+     * @return true if the point satisfies this query's distance limit, if any;
+     *         a NaN coordinate never does
+     */
+    boolean isNear(double pointLatitude, double pointLongitude) {
+        return GeoIndex.distanceKm(latitude, longitude, pointLatitude, pointLongitude) <= radiusKm;
+    }
+}
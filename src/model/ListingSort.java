@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * Orders the catalog keeps precomputed, so a sorted table is a walk over an
+ * index rather than a comparator sort. Ties go to the lower listing id.
+ */
+public enum ListingSort {
+    /** Cheapest first. */
+    PRICE,
+    /** Alphabetical, ignoring case. */
+    TITLE,
+    /** Alphabetical by location, cheapest first within each location. */
+    LOCATION_PRICE
+}
@@ -0,0 +1,353 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable backing store for the listing catalog.
+ * Listings live in a compact snapshot file plus an append-only log of the
+ * listings added or edited since that snapshot. Both files are memory-mapped on startup.
+ * Every record carries a CRC32, so a torn write at the end of the log is
+ * detected and cut off instead of corrupting the catalog.
+ *
+ * Appends are handed to a single writer thread which group-commits whatever
+ * has queued up since its last fsync, so a burst of submissions costs one
+ * force() rather than one per listing. If a write fails, the listings it
+ * carried stay with the writer and are retried with the next batch, or
+ * after a short delay if nothing else arrives; meanwhile flush() reports
+ * the failure.
+ */
+class ListingStore {
+
+    static final String SNAPSHOT_FILE = "listings.snapshot";
+    static final String LOG_FILE = "listings.log";
+
+    // "SLST" + format version, written at the start of every snapshot
+    private static final int MAGIC = 0x534C5354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    // upper bound of listings written per group commit
+    private static final int MAX_BATCH = 1024;
+    // wait before retrying failed writes when no new work arrives
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+
+    private FileChannel logChannel;
+    private Thread writer;
+    private volatile int logRecords;
+
+    // written by the writer thread only: a compaction and appends not yet on disk
+    private List<SubletListing> pendingCatalog;
+    private final List<SubletListing> pendingListings = new ArrayList<>();
+
+    ListingStore(Path directory) {
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.logPath = directory.resolve(LOG_FILE);
+    }
+
+    /**
+     * Reads the snapshot and replays the log on top of it.
+     * A corrupt or truncated record at the end of the log is dropped and the
+     * log is cut back to the last good record.
+     *
+     * @return every persisted listing, in id order
+     */
+    List<SubletListing> load() throws IOException {
+        List<SubletListing> result = new ArrayList<>();
+
+        if (Files.exists(snapshotPath)) {
+            try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                    throw new IOException("Unrecognized listing snapshot: " + snapshotPath);
+                }
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    SubletListing listing = readRecord(buffer);
+                    if (listing == null) {
+                        throw new IOException("Listing snapshot is corrupt at record " + i);
+                    }
+                    result.add(listing);
+                }
+            }
+        }
+
+        logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validEnd = 0;
+        int replayed = 0;
+        if (logChannel.size() > 0) {
+            MappedByteBuffer buffer = logChannel.map(FileChannel.MapMode.READ_ONLY, 0, logChannel.size());
+            SubletListing listing;
+            while ((listing = readRecord(buffer)) != null) {
+                // a record for an existing id is an edit, or a leftover from a crash mid-compaction
+                if (listing.getId() < result.size()) {
+                    result.set(listing.getId(), listing);
+                } else {
+                    result.add(listing);
+                }
+                validEnd = buffer.position();
+                replayed++;
+            }
+        }
+        if (validEnd < logChannel.size()) {
+            System.err.println("Dropping " + (logChannel.size() - validEnd) + " bytes of incomplete listing log");
+            logChannel.truncate(validEnd);
+        }
+        logChannel.position(validEnd);
+        logRecords = replayed;
+        return result;
+    }
+
+    /**
+     * Starts the background writer. Must be called after {@link #load()}.
+     */
+    void start() {
+        writer = new Thread(this::runWriter, "listing-store-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                System.err.println("Listings not saved at shutdown: " + e.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Queues a new or edited listing for the next group commit. Does not block.
+     */
+    void append(SubletListing listing) {
+        jobs.add(Job.append(listing));
+    }
+
+    /**
+     * Queues a compaction: the given listings become the new snapshot and the
+     * log is emptied. The list must be a private copy owned by the store.
+     */
+    void compact(List<SubletListing> catalog) {
+        jobs.add(Job.compact(catalog));
+    }
+
+    /**
+     * Number of log records written since the last snapshot.
+     */
+    int logRecords() {
+        return logRecords;
+    }
+
+    /**
+     * Blocks until every queued write has been forced to disk.
+     *
+     * @throws IOException if a write failed; the listings it carried stay
+     *         queued and are retried
+     */
+    void flush() throws IOException {
+        if (writer == null || !writer.isAlive()) {
+            return;
+        }
+        Job barrier = Job.barrier();
+        jobs.add(barrier);
+        try {
+            barrier.done.join();
+        } catch (CompletionException e) {
+            throw new IOException("Listing store write failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Writes a complete snapshot synchronously, e.g. for the initial seed data.
+     */
+    void writeSnapshot(List<SubletListing> catalog) throws IOException {
+        Path tmp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(catalog.size()).flip();
+            channel.write(header);
+            List<SubletListing> chunk = new ArrayList<>(MAX_BATCH);
+            for (SubletListing listing : catalog) {
+                chunk.add(listing);
+                if (chunk.size() == MAX_BATCH) {
+                    RecordFile.writeFully(channel, encode(chunk));
+                    chunk.clear();
+                }
+            }
+            RecordFile.writeFully(channel, encode(chunk));
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (logChannel != null) {
+            logChannel.truncate(0);
+            logChannel.position(0);
+            logChannel.force(true);
+        }
+        logRecords = 0;
+    }
+
+    private void runWriter() {
+        List<Job> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                Job first = pendingCatalog == null && pendingListings.isEmpty()
+                        ? jobs.take()
+                        : jobs.poll(RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    jobs.drainTo(batch, MAX_BATCH - 1);
+                }
+
+                // the newest compaction holds every listing queued before it,
+                // so earlier appends and compactions, failed ones included, can be skipped
+                int lastCompaction = -1;
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.get(i).catalog != null) {
+                        lastCompaction = i;
+                    }
+                }
+                if (lastCompaction >= 0) {
+                    pendingCatalog = batch.get(lastCompaction).catalog;
+                    pendingListings.clear();
+                }
+                for (int i = lastCompaction + 1; i < batch.size(); i++) {
+                    if (batch.get(i).listing != null) {
+                        pendingListings.add(batch.get(i).listing);
+                    }
+                }
+                if (pendingCatalog != null) {
+                    writeSnapshot(pendingCatalog);
+                    pendingCatalog = null;
+                }
+                commit(pendingListings);
+                for (Job job : batch) {
+                    job.done.complete(null);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Error writing listing store, will retry: " + e.getMessage());
+                for (Job job : batch) {
+                    job.done.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // one write + one fsync for the whole batch
+    private void commit(List<SubletListing> listings) throws IOException {
+        if (listings.isEmpty()) {
+            return;
+        }
+        long start = logChannel.position();
+        try {
+            RecordFile.writeFully(logChannel, encode(listings));
+            logChannel.force(false);
+        } catch (IOException e) {
+            // cut off a partial write, so the retry lands right after the last good record
+            try {
+                logChannel.truncate(start);
+                logChannel.position(start);
+            } catch (IOException truncateFailed) {
+                e.addSuppressed(truncateFailed);
+            }
+            throw e;
+        }
+        logRecords += listings.size();
+        listings.clear();
+    }
+
+    private static ByteBuffer encode(List<SubletListing> listings) {
+        List<byte[]> payloads = new ArrayList<>(listings.size());
+        for (SubletListing listing : listings) {
+            payloads.add(encodePayload(listing));
+        }
+        return RecordFile.frame(payloads);
+    }
+
+    private static byte[] encodePayload(SubletListing listing) {
+        byte[][] strings = {
+            RecordFile.utf8(listing.getTitle()), RecordFile.utf8(listing.getLocation()),
+            RecordFile.utf8(listing.getDescription()), RecordFile.utf8(listing.getSubletMode()),
+            RecordFile.utf8(listing.getImagePath())
+        };
+        int size = Integer.BYTES + Double.BYTES + 2 * Double.BYTES;
+        for (byte[] s : strings) {
+            size += RecordFile.sizeOf(s);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(listing.getId()).putDouble(listing.getPrice());
+        for (byte[] s : strings) {
+            RecordFile.putString(buffer, s);
+        }
+        // added after the strings so records written before coordinates existed still read
+        if (listing.isApproximateLocation()) {
+            // a guessed spot is not the listing's location; it is placed again on load
+            buffer.putDouble(Double.NaN).putDouble(Double.NaN);
+        } else {
+            buffer.putDouble(listing.getLatitude()).putDouble(listing.getLongitude());
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the record at the buffer's position, or returns null (leaving the
+     * position untouched) if the record is incomplete or fails its checksum.
+     */
+    private static SubletListing readRecord(ByteBuffer buffer) {
+        ByteBuffer in = RecordFile.read(buffer);
+        if (in == null) {
+            return null;
+        }
+        int id = in.getInt();
+        double price = in.getDouble();
+        String title = RecordFile.getString(in);
+        String location = RecordFile.getString(in);
+        String description = RecordFile.getString(in);
+        String subletMode = RecordFile.getString(in);
+        String imagePath = RecordFile.getString(in);
+
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        if (in.remaining() >= 2 * Double.BYTES) {
+            latitude = in.getDouble();
+            longitude = in.getDouble();
+        }
+        return new SubletListing(id, title, location, price, description, subletMode, imagePath, latitude, longitude, false);
+    }
+
+    // unit of work for the writer thread: an append, a compaction or a flush barrier
+    private static final class Job {
+        final SubletListing listing;
+        final List<SubletListing> catalog;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Job(SubletListing listing, List<SubletListing> catalog) {
+            this.listing = listing;
+            this.catalog = catalog;
+        }
+
+        static Job append(SubletListing listing) { return new Job(listing, null); }
+        static Job compact(List<SubletListing> catalog) { return new Job(null, catalog); }
+        static Job barrier() { return new Job(null, null); }
+    }
+}
@@ -0,0 +1,88 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fixed map data for the Boston area: the campuses students search around
+ * and the centres of the neighbourhoods listings are filed under.
+ */
+public final class Places {
+
+    /** A campus to measure distances from. */
+    public enum Campus {
+        NORTHEASTERN("Northeastern", 42.3398, -71.0892),
+        BOSTON_UNIVERSITY("Boston University", 42.3505, -71.1054),
+        HARVARD("Harvard", 42.3770, -71.1167),
+        MIT("MIT", 42.3601, -71.0942),
+        BOSTON_COLLEGE("Boston College", 42.3355, -71.1685),
+        TUFTS("Tufts", 42.4075, -71.1190);
+
+        private final String displayName;
+        private final double latitude;
+        private final double longitude;
+
+        Campus(String displayName, double latitude, double longitude) {
+            this.displayName = displayName;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        public String getDisplayName() { return displayName; }
+        public double getLatitude() { return latitude; }
+        public double getLongitude() { return longitude; }
+
+        /**
+         * @return the campus with the given display name, or null if there is none
+         */
+        public static Campus byDisplayName(String displayName) {
+            for (Campus campus : values()) {
+                if (campus.displayName.equals(displayName)) {
+                    return campus;
+                }
+            }
+            return null;
+        }
+    }
+
+    // how far a listing without an address may be placed from its neighbourhood centre
+    private static final double SPREAD_KM = 0.8;
+
+    private static final Map<String, double[]> neighbourhoods = new HashMap<>();
+
+    static {
+        neighbourhoods.put("Allston", new double[] { 42.3539, -71.1337 });
+        neighbourhoods.put("Boston", new double[] { 42.3467, -71.0880 });
+        neighbourhoods.put("Brookline", new double[] { 42.3318, -71.1212 });
+        neighbourhoods.put("Cambridge", new double[] { 42.3736, -71.1097 });
+        neighbourhoods.put("Fenway", new double[] { 42.3429, -71.1003 });
+        neighbourhoods.put("Somerville", new double[] { 42.3876, -71.0995 });
+    }
+
+    private Places() {
+    }
+
+    /**
+     * Gives a listing without coordinates an approximate spot inside its
+     * neighbourhood, so the distance filter can still consider it. The spot
+     * is derived from the listing id, so it is the same on every run; it is
+     * marked approximate, never persisted, and placed again on load.
+     * Listings in an unknown neighbourhood stay unplaced.
+     *
+     * @return the placed listing, or the listing itself if it needs no placing
+     */
+    static SubletListing placeInNeighbourhood(SubletListing listing) {
+        double[] centre = neighbourhoods.get(listing.getLocation());
+        // a guess is redone, in case the listing moved to another neighbourhood
+        if (centre == null || (listing.hasCoordinates() && !listing.isApproximateLocation())) {
+            return listing;
+        }
+        long hash = listing.getId() * 0x9E3779B97F4A7C15L;
+        double angle = (hash >>> 40) / (double) (1L << 24) * 2 * Math.PI;
+        double distance = ((hash >>> 16) & 0xFFFFFF) / (double) (1 << 24) * SPREAD_KM;
+        double latitude = centre[0] + distance * Math.sin(angle) / GeoIndex.KM_PER_DEGREE;
+        double longitude = centre[1] + distance * Math.cos(angle)
+                / (GeoIndex.KM_PER_DEGREE * Math.cos(Math.toRadians(centre[0])));
+        return listing.withApproximateCoordinates(latitude, longitude);
+    }
+}
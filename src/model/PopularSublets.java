@@ -0,0 +1,155 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming "most viewed" rankings over sliding time windows.
+ * Each window is a ring of time buckets. Each bucket holds a fixed-size
+ * Space-Saving summary, so memory stays bounded no matter how many listings
+ * get clicked. Recording a click touches only the current bucket of each
+ * window; old buckets are recycled as time moves on.
+ *
+ * Clicks arrive as CLICK events from the ChangeFeed, on the subscription's
+ * thread, so a click never waits on a ring's lock.
+ */
+public class PopularSublets {
+
+    public enum Window {
+        LAST_HOUR("Last hour", 12, 5 * 60_000L),
+        LAST_DAY("Last day", 24, 60 * 60_000L),
+        LAST_WEEK("Last week", 7, 24 * 60 * 60_000L);
+
+        private final String label;
+        private final int buckets;
+        private final long bucketMillis;
+
+        Window(String label, int buckets, long bucketMillis) {
+            this.label = label;
+            this.buckets = buckets;
+            this.bucketMillis = bucketMillis;
+        }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    /** One ranked listing and its (approximate) click count. */
+    public static class Entry {
+        private final int listingId;
+        private final long clicks;
+
+        Entry(int listingId, long clicks) {
+            this.listingId = listingId;
+            this.clicks = clicks;
+        }
+
+        public int getListingId() { return listingId; }
+        public long getClicks() { return clicks; }
+    }
+
+    /** The top listings of a window plus the clicks on everything else. */
+    public static class Ranking {
+        private final List<Entry> top;
+        private final long otherClicks;
+
+        Ranking(List<Entry> top, long otherClicks) {
+            this.top = top;
+            this.otherClicks = otherClicks;
+        }
+
+        public List<Entry> getTop() { return top; }
+        public long getOtherClicks() { return otherClicks; }
+    }
+
+    // counters kept per bucket; rankings are accurate for the top few dozen
+    private static final int CAPACITY = 64;
+
+    private static final Map<Window, Ring> rings = new EnumMap<>(Window.class);
+    private static final ChangeFeed.Subscription clicks;
+
+    static {
+        for (Window window : Window.values()) {
+            rings.put(window, new Ring(window));
+        }
+        clicks = ChangeFeed.subscribe("popular-sublets", (event, endOfBatch) -> {
+            if (event.getType() == ChangeFeed.Type.CLICK) {
+                record(event.getListingId(), event.getTimestamp());
+            }
+        });
+    }
+
+    // triggers initialization
+    static void load() {
+    }
+
+    static void record(int listingId, long now) {
+        for (Ring ring : rings.values()) {
+            ring.add(listingId, now);
+        }
+    }
+
+    /**
+     * @param window time window to rank over
+     * @param n maximum number of listings to return
+     * @return the n most clicked listings, most clicked first, plus an "other" total
+     */
+    static Ranking top(Window window, int n) {
+        // include clicks published before this call but not yet consumed
+        clicks.awaitCaughtUp();
+        return rings.get(window).top(n, System.currentTimeMillis());
+    }
+
+    private static class Ring {
+        private final Window window;
+        private final SpaceSaving[] buckets;
+        private final long[] epochs;
+
+        Ring(Window window) {
+            this.window = window;
+            this.buckets = new SpaceSaving[window.buckets];
+            this.epochs = new long[window.buckets];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new SpaceSaving(CAPACITY);
+                epochs[i] = -1;
+            }
+        }
+
+        synchronized void add(int listingId, long now) {
+            long epoch = now / window.bucketMillis;
+            int slot = (int) (epoch % buckets.length);
+            if (epochs[slot] != epoch) {
+                // this bucket last held a period that has slid out of the window
+                buckets[slot].clear();
+                epochs[slot] = epoch;
+            }
+            buckets[slot].add(listingId);
+        }
+
+        synchronized Ranking top(int n, long now) {
+            long oldest = now / window.bucketMillis - buckets.length + 1;
+            Map<Integer, Long> merged = new HashMap<>();
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                if (epochs[i] >= oldest) {
+                    buckets[i].addTo(merged);
+                    total += buckets[i].total();
+                }
+            }
+
+            List<Entry> entries = new ArrayList<>(merged.size());
+            merged.forEach((id, clicks) -> entries.add(new Entry(id, clicks)));
+            entries.sort((a, b) -> Long.compare(b.clicks, a.clicks));
+            List<Entry> top = new ArrayList<>(entries.subList(0, Math.min(n, entries.size())));
+
+            long shown = 0;
+            for (Entry entry : top) {
+                shown += entry.clicks;
+            }
+            return new Ranking(top, Math.max(0, total - shown));
+        }
+    }
+}
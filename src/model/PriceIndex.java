@@ -0,0 +1,254 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Listing ids kept sorted by price in two parallel primitive arrays.
+ * Lookups are a binary search; inserts shift the tail with one arraycopy,
+ * which is far cheaper than re-sorting or boxing every price.
+ */
+class PriceIndex {
+
+    /** Entries copied out of an index, cheapest first, ties by id. */
+    static final class Slice {
+        static final Slice EMPTY = new Slice(new double[0], new int[0], 0);
+
+        final double[] prices;
+        final int[] ids;
+        final int size;
+
+        Slice(double[] prices, int[] ids, int size) {
+            this.prices = prices;
+            this.ids = ids;
+            this.size = size;
+        }
+
+        int[] ids() {
+            return size == ids.length ? ids : Arrays.copyOf(ids, size);
+        }
+    }
+
+    private double[] prices = new double[16];
+    private int[] ids = new int[16];
+    private int size;
+
+    void add(double price, int id) {
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        // insert after equal prices so ties keep catalog order
+        int pos = upperBound(price);
+        System.arraycopy(prices, pos, prices, pos + 1, size - pos);
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        prices[pos] = price;
+        ids[pos] = id;
+        size++;
+    }
+
+    /**
+     * Removes the entry for the given id, which must have been added with this price.
+     */
+    void remove(double price, int id) {
+        // scan only the run of equal prices
+        for (int pos = lowerBound(price); pos < size && prices[pos] == price; pos++) {
+            if (ids[pos] == id) {
+                System.arraycopy(prices, pos + 1, prices, pos, size - pos - 1);
+                System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                size--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of entries with one sort of the batch and one merge into
+     * the existing entries, instead of shifting the arrays once per entry.
+     * The batch's ids must all be higher than the ids already added.
+     */
+    void addAll(double[] newPrices, int[] newIds, int count) {
+        Slice batch = sort(Arrays.copyOf(newPrices, count), Arrays.copyOf(newIds, count), count);
+        int total = size + count;
+        if (total > prices.length) {
+            prices = Arrays.copyOf(prices, Math.max(total, size * 2));
+            ids = Arrays.copyOf(ids, prices.length);
+        }
+        // merge from the back, into the free space past the old entries;
+        // on equal prices the batch goes last, so ties keep catalog order
+        int i = size - 1;
+        int j = count - 1;
+        for (int k = total - 1; j >= 0; k--) {
+            if (i >= 0 && prices[i] > batch.prices[j]) {
+                prices[k] = prices[i];
+                ids[k] = ids[i--];
+            } else {
+                prices[k] = batch.prices[j];
+                ids[k] = batch.ids[j--];
+            }
+        }
+        size = total;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Entries priced from minPrice to maxPrice inclusive, cheapest first,
+     * with prices alongside the ids so slices from several indexes can be
+     * merged.
+     *
+     * @param filter ids to keep, or null for all
+     * @param limit maximum number of entries, the cheapest ones
+     */
+    Slice slice(double minPrice, double maxPrice, IntPredicate filter, int limit) {
+        int from = lowerBound(minPrice);
+        int to = upperBound(maxPrice);
+        if (from >= to || limit <= 0) {
+            return Slice.EMPTY;
+        }
+        // ties are not stored in id order, so a cut takes the whole run of the
+        // last price and sortTies picks the lowest ids before the limit applies
+        if (filter == null) {
+            int end = (int) Math.min(to, (long) from + limit);
+            while (end < to && prices[end] == prices[end - 1]) {
+                end++;
+            }
+            double[] slicePrices = Arrays.copyOfRange(prices, from, end);
+            int[] sliceIds = Arrays.copyOfRange(ids, from, end);
+            sortTies(slicePrices, sliceIds, end - from);
+            return new Slice(slicePrices, sliceIds, Math.min(end - from, limit));
+        }
+        double[] slicePrices = new double[Math.min(to - from, limit)];
+        int[] sliceIds = new int[slicePrices.length];
+        int count = 0;
+        for (int pos = from; pos < to; pos++) {
+            if (count >= limit && prices[pos] != slicePrices[limit - 1]) {
+                break;
+            }
+            if (filter.test(ids[pos])) {
+                if (count == slicePrices.length) {
+                    slicePrices = Arrays.copyOf(slicePrices, Math.min(to - from, count * 2));
+                    sliceIds = Arrays.copyOf(sliceIds, slicePrices.length);
+                }
+                slicePrices[count] = prices[pos];
+                sliceIds[count++] = ids[pos];
+            }
+        }
+        sortTies(slicePrices, sliceIds, count);
+        return new Slice(slicePrices, sliceIds, Math.min(count, limit));
+    }
+
+    /**
+     * Merges two slices into one, keeping the cheapest limit entries.
+     */
+    static Slice merge(Slice a, Slice b, int limit) {
+        if (b.size == 0) {
+            return a;
+        }
+        if (a.size == 0) {
+            return b;
+        }
+        int size = (int) Math.min((long) a.size + b.size, limit);
+        double[] mergedPrices = new double[size];
+        int[] mergedIds = new int[size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            boolean takeA = j >= b.size || (i < a.size && (a.prices[i] < b.prices[j]
+                    || (a.prices[i] == b.prices[j] && a.ids[i] < b.ids[j])));
+            if (takeA) {
+                mergedPrices[k] = a.prices[i];
+                mergedIds[k] = a.ids[i++];
+            } else {
+                mergedPrices[k] = b.prices[j];
+                mergedIds[k] = b.ids[j++];
+            }
+        }
+        return new Slice(mergedPrices, mergedIds, size);
+    }
+
+    // within a run of equal prices, order by id, so merged results don't depend on shard layout
+    private static void sortTies(double[] prices, int[] ids, int size) {
+        int start = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i == size || prices[i] != prices[start]) {
+                if (i - start > 1) {
+                    Arrays.sort(ids, start, i);
+                }
+                start = i;
+            }
+        }
+    }
+
+    double minPrice() {
+        return size == 0 ? Double.NaN : prices[0];
+    }
+
+    double maxPrice() {
+        return size == 0 ? Double.NaN : prices[size - 1];
+    }
+
+    // bottom-up merge sort over both arrays; stable, so ties keep catalog order
+    private static Slice sort(double[] prices, int[] ids, int size) {
+        double[] srcPrices = prices;
+        int[] srcIds = ids;
+        double[] dstPrices = new double[prices.length];
+        int[] dstIds = new int[ids.length];
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size; lo += 2 * width) {
+                int mid = Math.min(lo + width, size);
+                int hi = Math.min(lo + 2 * width, size);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (i < mid && (j >= hi || srcPrices[i] <= srcPrices[j])) {
+                        dstPrices[k] = srcPrices[i];
+                        dstIds[k] = srcIds[i++];
+                    } else {
+                        dstPrices[k] = srcPrices[j];
+                        dstIds[k] = srcIds[j++];
+                    }
+                }
+            }
+            double[] tmpPrices = srcPrices;
+            srcPrices = dstPrices;
+            dstPrices = tmpPrices;
+            int[] tmpIds = srcIds;
+            srcIds = dstIds;
+            dstIds = tmpIds;
+        }
+        return new Slice(srcPrices, srcIds, size);
+    }
+
+    // first position whose price is not less than the given price
+    private int lowerBound(double price) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prices[mid] < price) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // first position whose price is greater than the given price
+    private int upperBound(double price) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prices[mid] <= price) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
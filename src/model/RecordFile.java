@@ -0,0 +1,100 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Record framing shared by the on-disk logs and snapshots.
+ * Each record is [payload length][CRC32 of payload][payload]; a reader stops
+ * at the first record that is incomplete or fails its checksum, which is how
+ * a torn write at the end of a log is detected.
+ */
+final class RecordFile {
+
+    static final int HEADER_SIZE = 8;
+
+    private RecordFile() {
+    }
+
+    /**
+     * Frames the given payloads back to back into one buffer, ready to write.
+     */
+    static ByteBuffer frame(List<byte[]> payloads) {
+        int total = 0;
+        for (byte[] payload : payloads) {
+            total += HEADER_SIZE + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Reads the record at the buffer's position.
+     *
+     * @return the payload, or null (leaving the position untouched) if the
+     *         record is incomplete or fails its checksum
+     */
+    static ByteBuffer read(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            buffer.position(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return null;
+        }
+        return ByteBuffer.wrap(payload);
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int sizeOf(byte[] s) {
+        return Integer.BYTES + (s == null ? 0 : s.length);
+    }
+
+    static void putString(ByteBuffer out, byte[] s) {
+        if (s == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(s.length).put(s);
+        }
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+}
@@ -0,0 +1,93 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only log behind SavedSearches. Saving a search logs the whole
+ * search, and recovery replays every save.
+ */
+class SavedSearchLog {
+
+    static final String LOG_FILE = "saved_searches.log";
+
+    private static final byte SAVE = 1;
+
+    private final Path logPath;
+    private FileChannel channel;
+
+    SavedSearchLog(Path directory) {
+        this.logPath = directory.resolve(LOG_FILE);
+    }
+
+    /**
+     * Opens the log and returns the saved searches, oldest first. A torn record at the end of the log is cut off.
+     */
+    List<SavedSearches.SavedSearch> recover() throws IOException {
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        List<SavedSearches.SavedSearch> searches = new ArrayList<>();
+        long validEnd = 0;
+        if (channel.size() > 0) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer in;
+            while ((in = RecordFile.read(buffer)) != null) {
+                byte type = in.get();
+                int id = in.getInt();
+                if (type == SAVE) {
+                    searches.add(decode(id, in));
+                }
+                validEnd = buffer.position();
+            }
+        }
+        if (validEnd < channel.size()) {
+            System.err.println("Dropping " + (channel.size() - validEnd) + " bytes of incomplete saved search log");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        return searches;
+    }
+
+    void logSave(SavedSearches.SavedSearch search) throws IOException {
+        byte[] username = RecordFile.utf8(search.getUsername());
+        byte[] location = RecordFile.utf8(search.getQuery().getLocation());
+        byte[] mode = RecordFile.utf8(search.getQuery().getMode());
+        ByteBuffer payload = ByteBuffer.allocate(1 + 2 * Integer.BYTES + RecordFile.sizeOf(username)
+                + RecordFile.sizeOf(location) + RecordFile.sizeOf(mode) + 5 * Double.BYTES);
+        ListingQuery query = search.getQuery();
+        payload.put(SAVE).putInt(search.getId()).putInt(search.getSinceId());
+        RecordFile.putString(payload, username);
+        RecordFile.putString(payload, location);
+        RecordFile.putString(payload, mode);
+        payload.putDouble(query.getMinPrice()).putDouble(query.getMaxPrice())
+                .putDouble(query.getLatitude()).putDouble(query.getLongitude()).putDouble(query.getRadiusKm());
+        append(payload.array());
+    }
+
+    private void append(byte[] payload) throws IOException {
+        RecordFile.writeFully(channel, RecordFile.frame(Collections.singletonList(payload)));
+        channel.force(false);
+    }
+
+    private static SavedSearches.SavedSearch decode(int id, ByteBuffer in) {
+        int sinceId = in.getInt();
+        String username = RecordFile.getString(in);
+        String location = RecordFile.getString(in);
+        String mode = RecordFile.getString(in);
+        ListingQuery query = new ListingQuery(location, mode, in.getDouble(), in.getDouble());
+        double latitude = in.getDouble();
+        double longitude = in.getDouble();
+        double radiusKm = in.getDouble();
+        if (!Double.isNaN(radiusKm)) {
+            query = query.within(latitude, longitude, radiusKm);
+        }
+        return new SavedSearches.SavedSearch(id, username, query, sinceId);
+    }
+}
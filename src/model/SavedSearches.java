@@ -0,0 +1,285 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saved searches that are matched against every new listing, with the
+ * matches collected in a per-user inbox.
+ * Matching runs the other way round from a normal search. The saved
+ * searches are indexed by location and by the $100 price buckets their
+ * budget overlaps. A new listing then looks up one bucket for its own
+ * location and one for "any location". Only the searches found there are
+ * checked, mostly against prices stored inline in the bucket. The cost per listing follows the number of searches that
+ * could match it, not the total number saved.
+ *
+ * Searches are kept in a log and survive restarts. Inboxes are rebuilt on
+ * startup from the listings added since each search was saved.
+ *
+ * Listener callbacks run while SubletStorage holds its lock, so the lock
+ * order is always SubletStorage, then this class.
+ */
+public class SavedSearches {
+
+    /** A search a user asked to be notified about. Immutable. */
+    public static class SavedSearch {
+        private final int id;
+        private final String username;
+        private final ListingQuery query;
+        private final int sinceId;
+
+        SavedSearch(int id, String username, ListingQuery query, int sinceId) {
+            this.id = id;
+            this.username = username;
+            this.query = query;
+            this.sinceId = sinceId;
+        }
+
+        public int getId() { return id; }
+        public String getUsername() { return username; }
+        public ListingQuery getQuery() { return query; }
+        /** @return id of the first listing this search is matched against */
+        public int getSinceId() { return sinceId; }
+    }
+
+    /** A new listing that matched one of a user's saved searches. */
+    public static class Match {
+        private final SavedSearch search;
+        private final int listingId;
+
+        Match(SavedSearch search, int listingId) {
+            this.search = search;
+            this.listingId = listingId;
+        }
+
+        public SavedSearch getSearch() { return search; }
+        public int getListingId() { return listingId; }
+
+        /** @return the matched listing as it is now */
+        public SubletListing getListing() {
+            return SubletStorage.getListing(listingId);
+        }
+    }
+
+    private static final int BUCKET_WIDTH = 100;
+    // the last bucket holds every higher price
+    private static final int BUCKETS = 60;
+    // newest matches kept per user
+    private static final int INBOX_LIMIT = 200;
+
+    // a user's newest matches, as (search id, listing id) pairs packed into longs
+    private static class Inbox {
+        long[] entries = new long[8];
+        int next;
+        int size;
+
+        void add(int searchId, int listingId) {
+            if (size == entries.length && size < INBOX_LIMIT) {
+                entries = Arrays.copyOf(entries, Math.min(size * 2, INBOX_LIMIT));
+                next = size;
+            }
+            entries[next] = (long) searchId << 32 | listingId;
+            next = (next + 1) % entries.length;
+            size = Math.min(size + 1, entries.length);
+        }
+    }
+
+    // one price bucket's searches; the fields matching reads sit inline, so a scan is sequential
+    private static class Bucket {
+        int[] ids = new int[4];
+        double[] minPrices = new double[4];
+        double[] maxPrices = new double[4];
+        int[] sinceIds = new int[4];
+        int size;
+
+        void add(SavedSearch search) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                minPrices = Arrays.copyOf(minPrices, size * 2);
+                maxPrices = Arrays.copyOf(maxPrices, size * 2);
+                sinceIds = Arrays.copyOf(sinceIds, size * 2);
+            }
+            ids[size] = search.getId();
+            minPrices[size] = search.getQuery().getMinPrice();
+            maxPrices[size] = search.getQuery().getMaxPrice();
+            sinceIds[size] = search.getSinceId();
+            size++;
+        }
+    }
+
+    // saved search ids by location (null for any location), then by price bucket
+    private static final Map<String, Bucket[]> index = new HashMap<>();
+    private static SavedSearch[] searches = new SavedSearch[64];
+    // searches with a sublet mode or distance limit, which need the full query check
+    private static final BitSet fullCheck = new BitSet();
+    private static Inbox[] inboxOf = new Inbox[64];
+    private static int nextId;
+    private static int count;
+    // listings below every search's sinceId can't match anything
+    private static int minSinceId = Integer.MAX_VALUE;
+    private static final Map<String, List<SavedSearch>> byUser = new HashMap<>();
+    private static final Map<String, Inbox> inboxes = new HashMap<>();
+    private static SavedSearchLog log = new SavedSearchLog(Path.of("."));
+
+    static {
+        long start = StartupTimeline.start();
+        try {
+            for (SavedSearch search : log.recover()) {
+                register(search);
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading saved searches, running without persistence: " + e.getMessage());
+            log = null;
+        }
+        SubletStorage.addListener(new ListingListener() {
+            @Override
+            public void listingAdded(SubletListing listing) {
+                match(listing);
+            }
+
+            @Override
+            public void listingUpdated(SubletListing before, SubletListing after) {
+                // only new listings are announced
+            }
+        });
+        StartupTimeline.span("load saved searches (" + count + " searches)", start);
+    }
+
+    /**
+     * Saves a search for the user. Listings added from now on that match it
+     * go to the user's inbox.
+     */
+    public static SavedSearch save(String username, ListingQuery query) {
+        SavedSearch search;
+        // holding the storage lock, no listing can be added between reading the
+        // size and registering the search; this class's lock nests inside it
+        synchronized (SubletStorage.class) {
+            int sinceId = SubletStorage.size();
+            synchronized (SavedSearches.class) {
+                search = new SavedSearch(nextId, username, query, sinceId);
+                register(search);
+            }
+        }
+        // written without holding up listing writers
+        synchronized (SavedSearches.class) {
+            if (log != null) {
+                try {
+                    log.logSave(search);
+                } catch (IOException e) {
+                    System.err.println("Error saving search: " + e.getMessage());
+                }
+            }
+        }
+        return search;
+    }
+
+    /**
+     * @return the user's saved searches, oldest first
+     */
+    public static synchronized List<SavedSearch> forUser(String username) {
+        return new ArrayList<>(byUser.getOrDefault(username, List.of()));
+    }
+
+    /**
+     * @return the user's most recent matches, newest first
+     */
+    public static synchronized List<Match> inbox(String username) {
+        Inbox inbox = inboxes.get(username);
+        if (inbox == null) {
+            return new ArrayList<>();
+        }
+        List<Match> matches = new ArrayList<>(inbox.size);
+        for (int i = 1; i <= inbox.size; i++) {
+            long entry = inbox.entries[Math.floorMod(inbox.next - i, inbox.entries.length)];
+            SavedSearch search = searches[(int) (entry >>> 32)];
+            matches.add(new Match(search, (int) entry));
+        }
+        return matches;
+    }
+
+    /**
+     * @return number of saved searches across all users
+     */
+    public static synchronized int size() {
+        return count;
+    }
+
+    private static synchronized void match(SubletListing listing) {
+        int id = listing.getId();
+        if (id < minSinceId) {
+            return;
+        }
+        int bucket = bucket(listing.getPrice());
+        matchBucket(index.get(listing.getLocation()), bucket, listing);
+        if (listing.getLocation() != null) {
+            matchBucket(index.get(null), bucket, listing);
+        }
+    }
+
+    // primitive checks first; the query object is only consulted for mode and distance
+    private static void matchBucket(Bucket[] buckets, int bucket, SubletListing listing) {
+        if (buckets == null) {
+            return;
+        }
+        Bucket candidates = buckets[bucket];
+        int listingId = listing.getId();
+        double price = listing.getPrice();
+        for (int i = 0; i < candidates.size; i++) {
+            if (listingId >= candidates.sinceIds[i] && price >= candidates.minPrices[i]
+                    && price <= candidates.maxPrices[i]) {
+                int id = candidates.ids[i];
+                if (!fullCheck.get(id) || searches[id].getQuery().matches(listing)) {
+                    inboxOf[id].add(id, listingId);
+                }
+            }
+        }
+    }
+
+    private static void register(SavedSearch search) {
+        int id = search.getId();
+        if (id >= searches.length) {
+            int capacity = Math.max(id + 1, searches.length * 2);
+            searches = Arrays.copyOf(searches, capacity);
+            inboxOf = Arrays.copyOf(inboxOf, capacity);
+        }
+        ListingQuery query = search.getQuery();
+        searches[id] = search;
+        fullCheck.set(id, query.getMode() != null || query.hasRadius());
+        inboxOf[id] = inboxes.computeIfAbsent(search.getUsername(), k -> new Inbox());
+        nextId = Math.max(nextId, id + 1);
+        count++;
+        minSinceId = Math.min(minSinceId, search.getSinceId());
+        Bucket[] buckets = index.computeIfAbsent(query.getLocation(), k -> newBuckets());
+        for (int b = firstBucket(query); b <= lastBucket(query); b++) {
+            buckets[b].add(search);
+        }
+        byUser.computeIfAbsent(search.getUsername(), k -> new ArrayList<>()).add(search);
+    }
+
+    private static Bucket[] newBuckets() {
+        Bucket[] buckets = new Bucket[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            buckets[b] = new Bucket();
+        }
+        return buckets;
+    }
+
+    // an empty budget (min above max) is registered nowhere
+    private static int firstBucket(ListingQuery query) {
+        return query.getMinPrice() > query.getMaxPrice() ? BUCKETS : bucket(query.getMinPrice());
+    }
+
+    private static int lastBucket(ListingQuery query) {
+        return bucket(query.getMaxPrice());
+    }
+
+    private static int bucket(double price) {
+        return (int) Math.max(0, Math.min(BUCKETS - 1, Math.floor(price / BUCKET_WIDTH)));
+    }
+}
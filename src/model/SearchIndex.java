@@ -0,0 +1,584 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Full-text index over listing titles and descriptions, maintained by
+ * SubletStorage. An inverted index maps every term to the listings that
+ * contain it, and results are ranked by BM25. A query token also matches
+ * terms it is a prefix of ("furn" finds "furnished") and, when it isn't a
+ * known term, terms within one or two edits ("renovted"). Expanded matches
+ * score lower than exact ones. In an unfiltered search, terms that appear
+ * in a large share of the catalog are ranked through champion lists, so
+ * query time depends on the number of results wanted rather than the
+ * catalog size. Only a listing that scores below every champion on such a
+ * term can be left out. A filtered search walks the full postings and
+ * checks the filter as it scores, because the listings the filter keeps
+ * need not be among the champions.
+ *
+ * Reads and writes may come from different threads, so access goes through
+ * a read-write lock.
+ */
+class SearchIndex implements CatalogIndex {
+
+    // standard BM25 parameters
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // a title term counts as this many description terms
+    private static final int TITLE_BOOST = 2;
+
+    // terms in more listings than this are scored through their champion list
+    private static final int CHAMPION_MIN_DF = 20_000;
+    private static final int CHAMPIONS = 10_000;
+    // rebuild a champion list once this many postings were added after it
+    private static final int CHAMPION_MAX_TAIL = 4_096;
+
+    private static final float PREFIX_WEIGHT = 0.7f;
+    private static final float[] TYPO_WEIGHTS = { 1f, 0.5f, 0.25f };
+    private static final int MAX_EXPANSIONS = 64;
+
+    /** The listings containing one term, with the term's frequency in each. */
+    private static class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+        // highest-impact entries of a long list; built lazily by queries, dropped by writers
+        volatile Champions champions;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        // order doesn't matter for scoring, so fill the gap with the last entry
+        void remove(int doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    champions = null;
+                    size--;
+                    docs[i] = docs[size];
+                    freqs[i] = freqs[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The CHAMPIONS postings of a term with the highest BM25 impact, as of
+     * when the list was built. Postings appended since then (positions
+     * builtSize and up) are scored on top of them. Ranking a common term by
+     * its champions instead of every listing that contains it is what keeps
+     * queries fast on a large catalog; a listing outside the list can only
+     * be missed if it scores below every champion on that term. Only
+     * unfiltered searches use them.
+     */
+    private static class Champions {
+        final int[] docs;
+        final int[] freqs;
+        final int builtSize;
+
+        Champions(int[] docs, int[] freqs, int builtSize) {
+            this.docs = docs;
+            this.freqs = freqs;
+            this.builtSize = builtSize;
+        }
+    }
+
+    /** Per-thread score accumulator, reused across queries. */
+    private static class Scratch {
+        float[] scores = new float[0];
+        int[] touched = new int[0];
+        int touchedCount;
+        // when most listings match, skip tracking touched ids and scan all scores instead
+        boolean dense;
+
+        void ensure(int capacity) {
+            if (scores.length < capacity) {
+                scores = new float[capacity];
+                touched = new int[capacity];
+            }
+        }
+    }
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    // terms containing a letter, grouped by length, for finding typo candidates
+    private final Map<Integer, Set<String>> termsByLength = new HashMap<>();
+    // token count per listing id; 0 means the id isn't indexed
+    private int[] docLengths = new int[64];
+    // BM25 length normalization per listing, for the average length in normsAverage
+    private float[] norms = new float[64];
+    private float normsAverage;
+    private int docCount;
+    private long totalLength;
+
+    // recompute every norm once the average length drifts this far from normsAverage
+    private static final float NORM_DRIFT = 0.05f;
+    // a filtered scan checks for interruption once per this many postings
+    private static final int INTERRUPT_CHECK_MASK = (1 << 16) - 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    @Override
+    public void add(SubletListing listing) {
+        lock.writeLock().lock();
+        try {
+            addLocked(listing);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addAll(List<SubletListing> listings) {
+        lock.writeLock().lock();
+        try {
+            for (SubletListing listing : listings) {
+                addTerms(listing);
+            }
+            // one drift check for the batch; a full pass per listing would be quadratic
+            if (!renormalizeIfDrifted()) {
+                for (SubletListing listing : listings) {
+                    norms[listing.getId()] = norm(docLengths[listing.getId()]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a listing, given the version of it that was indexed.
+     */
+    @Override
+    public void remove(SubletListing listing) {
+        int id = listing.getId();
+        lock.writeLock().lock();
+        try {
+            if (id >= docLengths.length || docLengths[id] == 0) {
+                return;
+            }
+            for (String term : termFrequencies(listing).keySet()) {
+                Postings postings = terms.get(term);
+                if (postings == null) {
+                    continue;
+                }
+                postings.remove(id);
+                if (postings.size == 0) {
+                    terms.remove(term);
+                    if (isWord(term)) {
+                        termsByLength.get(term.length()).remove(term);
+                    }
+                }
+            }
+            totalLength -= docLengths[id];
+            docLengths[id] = 0;
+            docCount--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks listings against a free-text query.
+     *
+     * @param query words to look for, in any order
+     * @param filter accepts the ids that may be returned; null for every listing
+     * @param limit maximum number of results
+     * @return matching listing ids, best match first
+     */
+    int[] search(String query, IntPredicate filter, int limit) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        Scratch s = scratch.get();
+        lock.readLock().lock();
+        try {
+            if (docCount == 0) {
+                return new int[0];
+            }
+            s.ensure(docLengths.length);
+            List<Map<Postings, Float>> matches = new ArrayList<>(tokens.size());
+            long postingCount = 0;
+            for (String token : tokens) {
+                Map<Postings, Float> expanded = expand(token);
+                for (Postings postings : expanded.keySet()) {
+                    postingCount += postings.size < CHAMPION_MIN_DF || filter != null
+                            ? postings.size : CHAMPIONS + CHAMPION_MAX_TAIL;
+                }
+                matches.add(expanded);
+            }
+            s.dense = postingCount > docCount / 8;
+            for (Map<Postings, Float> expanded : matches) {
+                for (Map.Entry<Postings, Float> match : expanded.entrySet()) {
+                    checkInterrupted();
+                    accumulate(s, match.getKey(), match.getValue(), filter);
+                }
+            }
+            return topK(s, limit, docLengths.length);
+        } finally {
+            lock.readLock().unlock();
+            if (s.dense) {
+                Arrays.fill(s.scores, 0f);
+            } else {
+                for (int i = 0; i < s.touchedCount; i++) {
+                    s.scores[s.touched[i]] = 0f;
+                }
+            }
+            s.touchedCount = 0;
+        }
+    }
+
+    /**
+     * Splits text into lower-case runs of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void addLocked(SubletListing listing) {
+        addTerms(listing);
+        if (!renormalizeIfDrifted()) {
+            norms[listing.getId()] = norm(docLengths[listing.getId()]);
+        }
+    }
+
+    // postings and length of a new listing; its norm is left to the caller
+    private void addTerms(SubletListing listing) {
+        int id = listing.getId();
+        if (id >= docLengths.length) {
+            int capacity = Math.max(id + 1, docLengths.length * 2);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+            norms = Arrays.copyOf(norms, capacity);
+        }
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : termFrequencies(listing).entrySet()) {
+            String term = entry.getKey();
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(term, postings);
+                if (isWord(term)) {
+                    termsByLength.computeIfAbsent(term.length(), k -> new HashSet<>()).add(term);
+                }
+            }
+            postings.add(id, entry.getValue());
+            length += entry.getValue();
+        }
+        // an empty listing still counts as indexed
+        docLengths[id] = Math.max(length, 1);
+        totalLength += docLengths[id];
+        docCount++;
+    }
+
+    /**
+     * Recomputes every norm if the average length has drifted too far.
+     *
+     * @return true if it did
+     */
+    private boolean renormalizeIfDrifted() {
+        float average = (float) totalLength / docCount;
+        if (Math.abs(average - normsAverage) <= NORM_DRIFT * normsAverage) {
+            return false;
+        }
+        normsAverage = average;
+        for (int doc = 0; doc < docLengths.length; doc++) {
+            norms[doc] = norm(docLengths[doc]);
+        }
+        // impacts changed, so every champion list is out of date
+        for (Postings postings : terms.values()) {
+            postings.champions = null;
+        }
+        return true;
+    }
+
+    private float norm(int length) {
+        return K1 * (1 - B + B * length / normsAverage);
+    }
+
+    private static Map<String, Integer> termFrequencies(SubletListing listing) {
+        Map<String, Integer> freqs = new HashMap<>();
+        for (String token : tokenize(listing.getTitle())) {
+            freqs.merge(token, TITLE_BOOST, Integer::sum);
+        }
+        for (String token : tokenize(listing.getDescription())) {
+            freqs.merge(token, 1, Integer::sum);
+        }
+        return freqs;
+    }
+
+    // the terms a query token matches, with the weight of each match
+    private Map<Postings, Float> expand(String token) {
+        Map<Postings, Float> matches = new HashMap<>();
+        Postings exact = terms.get(token);
+        if (exact != null) {
+            matches.put(exact, 1f);
+        }
+        if (token.length() >= 2) {
+            int expansions = 0;
+            for (Postings postings : terms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                matches.putIfAbsent(postings, PREFIX_WEIGHT);
+                if (++expansions == MAX_EXPANSIONS) {
+                    break;
+                }
+            }
+        }
+        // only look for typos when the token isn't a term we know
+        if (exact == null && token.length() >= 4 && isWord(token)) {
+            int maxEdits = token.length() >= 8 ? 2 : 1;
+            for (int length = token.length() - maxEdits; length <= token.length() + maxEdits; length++) {
+                Set<String> candidates = termsByLength.get(length);
+                if (candidates == null) {
+                    continue;
+                }
+                for (String candidate : candidates) {
+                    int edits = editDistance(token, candidate, maxEdits);
+                    if (edits <= maxEdits) {
+                        matches.merge(terms.get(candidate), TYPO_WEIGHTS[edits], Math::max);
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    // numbers (unit numbers, prices) are matched exactly or by prefix, never as typos
+    private static boolean isWord(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (Character.isLetter(term.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // only ids the filter accepts get a score, so topK needs no further check
+    private void accumulate(Scratch s, Postings postings, float weight, IntPredicate filter) {
+        int df = postings.size;
+        float idf = (float) Math.log(1 + (docCount - df + 0.5) / (df + 0.5));
+        float scale = weight * idf * (K1 + 1);
+        if (filter != null) {
+            // the champions may hold none of the listings the filter keeps
+            accumulateFiltered(s, postings.docs, postings.freqs, df, scale, filter);
+            return;
+        }
+        if (df < CHAMPION_MIN_DF) {
+            accumulate(s, postings.docs, postings.freqs, 0, df, scale);
+            return;
+        }
+        Champions champions = postings.champions;
+        if (champions == null || df - champions.builtSize > CHAMPION_MAX_TAIL) {
+            champions = buildChampions(postings);
+            postings.champions = champions;
+        }
+        accumulate(s, champions.docs, champions.freqs, 0, champions.docs.length, scale);
+        accumulate(s, postings.docs, postings.freqs, champions.builtSize, df, scale);
+    }
+
+    private void accumulate(Scratch s, int[] docs, int[] freqs, int from, int to, float scale) {
+        float[] scores = s.scores;
+        if (s.dense) {
+            for (int i = from; i < to; i++) {
+                int doc = docs[i];
+                int tf = freqs[i];
+                scores[doc] += scale * tf / (tf + norms[doc]);
+            }
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            int doc = docs[i];
+            int tf = freqs[i];
+            if (scores[doc] == 0f) {
+                s.touched[s.touchedCount++] = doc;
+            }
+            scores[doc] += scale * tf / (tf + norms[doc]);
+        }
+    }
+
+    private void accumulateFiltered(Scratch s, int[] docs, int[] freqs, int to, float scale, IntPredicate filter) {
+        float[] scores = s.scores;
+        for (int i = 0; i < to; i++) {
+            if ((i & INTERRUPT_CHECK_MASK) == 0) {
+                checkInterrupted();
+            }
+            int doc = docs[i];
+            if (!filter.test(doc)) {
+                continue;
+            }
+            int tf = freqs[i];
+            if (!s.dense && scores[doc] == 0f) {
+                s.touched[s.touchedCount++] = doc;
+            }
+            scores[doc] += scale * tf / (tf + norms[doc]);
+        }
+    }
+
+    // runs under the read lock; concurrent builds of the same list are harmless
+    private Champions buildChampions(Postings postings) {
+        int size = postings.size;
+        float[] impacts = new float[size];
+        for (int i = 0; i < size; i++) {
+            int tf = postings.freqs[i];
+            impacts[i] = tf / (tf + norms[postings.docs[i]]);
+        }
+        // min-heap of positions on impact, keeping the CHAMPIONS best
+        int[] heap = new int[CHAMPIONS];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (count < CHAMPIONS) {
+                heap[count] = i;
+                siftUp(heap, count++, impacts);
+            } else if (impacts[i] > impacts[heap[0]]) {
+                heap[0] = i;
+                siftDown(heap, count, impacts);
+            }
+        }
+        // back in list order, which is roughly id order, for cache-friendly scoring
+        Arrays.sort(heap, 0, count);
+        int[] docs = new int[count];
+        int[] freqs = new int[count];
+        for (int i = 0; i < count; i++) {
+            docs[i] = postings.docs[heap[i]];
+            freqs[i] = postings.freqs[heap[i]];
+        }
+        return new Champions(docs, freqs, size);
+    }
+
+    // a cancelled background query interrupts its thread; the scratch is reset on the way out
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search interrupted");
+        }
+    }
+
+    private static int[] topK(Scratch s, int limit, int docSpace) {
+        float[] scores = s.scores;
+        // min-heap of ids on score, so the weakest of the current best is at the root
+        int[] heap = new int[limit];
+        int size = 0;
+        int candidates = s.dense ? docSpace : s.touchedCount;
+        for (int i = 0; i < candidates; i++) {
+            int doc = s.dense ? i : s.touched[i];
+            float score = scores[doc];
+            if (score == 0f || (size == limit && score <= scores[heap[0]])) {
+                continue;
+            }
+            if (size < limit) {
+                heap[size] = doc;
+                siftUp(heap, size++, scores);
+            } else {
+                heap[0] = doc;
+                siftDown(heap, size, scores);
+            }
+        }
+        // pop the weakest first, filling the result from the back
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size, scores);
+        }
+        return result;
+    }
+
+    // heap helpers shared by ranking and champion selection; keys are looked up in scores
+    private static void siftUp(int[] heap, int i, float[] scores) {
+        int doc = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[heap[parent]] <= scores[doc]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = doc;
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        if (size == 0) {
+            return;
+        }
+        int doc = heap[0];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && scores[heap[child + 1]] < scores[heap[child]]) {
+                child++;
+            }
+            if (scores[doc] <= scores[heap[child]]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = doc;
+    }
+
+    /**
+     * Levenshtein distance, giving up once it must exceed max.
+     *
+     * @return the distance, or max + 1 if it is larger than max
+     */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+}
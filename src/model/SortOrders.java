@@ -0,0 +1,336 @@
+package model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Precomputed sort permutations of the catalog, maintained by SubletStorage.
+ * For every {@link ListingSort} it keeps the listing ids in sorted order.
+ * Each order sorts the whole catalog once, the first time it is asked for,
+ * so startup doesn't pay for orders nobody uses. After that a new listing is
+ * inserted at its binary-searched position, and an edited one is taken out
+ * and inserted again. A large batch, such as a bulk import, sends the
+ * orders back to unbuilt instead.
+ *
+ * Sorting a set of ids then needs no comparator:
+ * - a large set is sorted by walking the permutation and keeping its
+ *   members
+ * - a small set is sorted by each id's position in the permutation
+ *
+ * Queries may run on background threads while SubletStorage writes, so
+ * access goes through a read-write lock.
+ */
+class SortOrders implements CatalogIndex {
+
+    // below this fraction of the catalog, sorting by rank beats walking the whole order
+    private static final int WALK_RATIO = 16;
+    // batches this large drop the built orders instead of inserting id by id
+    private static final int REBUILD_BATCH = 1024;
+    // a walk checks for interruption once per this many positions
+    private static final int INTERRUPT_CHECK_MASK = (1 << 16) - 1;
+
+    private static class Order {
+        // sorted listing ids; empty until the order is first used
+        int[] ids = new int[0];
+        int size;
+        volatile boolean built;
+        // position of each id in ids; rebuilt after changes, when first needed
+        volatile int[] ranks;
+    }
+
+    private interface IdComparator {
+        int compare(int a, int b);
+    }
+
+    private final Map<ListingSort, Order> orders = new EnumMap<>(ListingSort.class);
+    // sort keys by listing id
+    private double[] prices = new double[64];
+    private String[] titles = new String[64];
+    private String[] locations = new String[64];
+    // listing ids are dense, so the catalog is ids 0 to count - 1
+    private int count;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    SortOrders() {
+        for (ListingSort sort : ListingSort.values()) {
+            orders.put(sort, new Order());
+        }
+    }
+
+    @Override
+    public void add(SubletListing listing) {
+        addAll(List.of(listing));
+    }
+
+    @Override
+    public void addAll(List<SubletListing> listings) {
+        lock.writeLock().lock();
+        try {
+            if (listings.size() >= REBUILD_BATCH) {
+                // each insert shifts the order; one full sort on next use is cheaper
+                for (Order order : orders.values()) {
+                    order.built = false;
+                    order.ids = new int[0];
+                    order.size = 0;
+                    order.ranks = null;
+                }
+            }
+            for (SubletListing listing : listings) {
+                setKeys(listing);
+                for (Map.Entry<ListingSort, Order> entry : orders.entrySet()) {
+                    if (entry.getValue().built) {
+                        insert(entry.getValue(), comparator(entry.getKey()), listing.getId());
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes a listing out of every order. Must be called with the listing as
+     * it was indexed, before its keys are replaced.
+     */
+    @Override
+    public void remove(SubletListing listing) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<ListingSort, Order> entry : orders.entrySet()) {
+                Order order = entry.getValue();
+                if (!order.built) {
+                    continue;
+                }
+                int position = lowerBound(order, comparator(entry.getKey()), listing.getId());
+                if (position < order.size && order.ids[position] == listing.getId()) {
+                    System.arraycopy(order.ids, position + 1, order.ids, position, order.size - position - 1);
+                    order.size--;
+                    order.ranks = null;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param ids the listings to sort, or null for the whole catalog
+     * @return the ids in the given order; ids not in the catalog are dropped
+     */
+    int[] sort(ListingSort sort, boolean descending, int[] ids) {
+        Order order = orders.get(sort);
+        lock.readLock().lock();
+        // a large batch may drop the order again between building it and reading it
+        while (!order.built) {
+            lock.readLock().unlock();
+            build(sort, order);
+            lock.readLock().lock();
+        }
+        try {
+            int[] result;
+            if (ids == null) {
+                result = Arrays.copyOf(order.ids, order.size);
+            } else if ((long) ids.length * WALK_RATIO >= order.size) {
+                result = walk(order, ids);
+            } else {
+                result = byRank(order, ids);
+            }
+            if (descending) {
+                reverse(result);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // one full sort; from then on the order is kept up to date by add and remove
+    private void build(ListingSort sort, Order order) {
+        lock.writeLock().lock();
+        try {
+            if (order.built) {
+                return;
+            }
+            int[] ids = new int[Math.max(count, 64)];
+            for (int id = 0; id < count; id++) {
+                ids[id] = id;
+            }
+            mergeSort(ids, count, comparator(sort));
+            order.ids = ids;
+            order.size = count;
+            order.ranks = null;
+            order.built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the permutation, keeping only the given ids: O(n), no comparisons
+    private static int[] walk(Order order, int[] ids) {
+        BitSet members = new BitSet();
+        for (int id : ids) {
+            members.set(id);
+        }
+        int[] result = new int[ids.length];
+        int count = 0;
+        for (int i = 0; i < order.size && count < result.length; i++) {
+            // a cancelled background query interrupts its thread
+            if ((i & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Sort interrupted");
+            }
+            if (members.get(order.ids[i])) {
+                result[count++] = order.ids[i];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    // rank in the high half, id in the low half: sorting the longs sorts by rank
+    private static int[] byRank(Order order, int[] ids) {
+        int[] ranks = ranks(order);
+        long[] keyed = new long[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            if (id >= 0 && id < ranks.length && ranks[id] >= 0) {
+                keyed[count++] = (long) ranks[id] << 32 | id;
+            }
+        }
+        Arrays.sort(keyed, 0, count);
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = (int) keyed[i];
+        }
+        return result;
+    }
+
+    // called under the read lock; racing readers build identical arrays, so either may win
+    private static int[] ranks(Order order) {
+        int[] ranks = order.ranks;
+        if (ranks == null) {
+            int maxId = -1;
+            for (int i = 0; i < order.size; i++) {
+                maxId = Math.max(maxId, order.ids[i]);
+            }
+            ranks = new int[maxId + 1];
+            Arrays.fill(ranks, -1);
+            for (int i = 0; i < order.size; i++) {
+                ranks[order.ids[i]] = i;
+            }
+            order.ranks = ranks;
+        }
+        return ranks;
+    }
+
+    private void setKeys(SubletListing listing) {
+        int id = listing.getId();
+        if (id >= prices.length) {
+            int capacity = Math.max(id + 1, prices.length * 2);
+            prices = Arrays.copyOf(prices, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            locations = Arrays.copyOf(locations, capacity);
+        }
+        prices[id] = listing.getPrice();
+        titles[id] = listing.getTitle();
+        locations[id] = listing.getLocation();
+        count = Math.max(count, id + 1);
+    }
+
+    private IdComparator comparator(ListingSort sort) {
+        switch (sort) {
+            case PRICE:
+                return (a, b) -> {
+                    int c = Double.compare(prices[a], prices[b]);
+                    return c != 0 ? c : Integer.compare(a, b);
+                };
+            case TITLE:
+                return (a, b) -> {
+                    int c = compareText(titles[a], titles[b]);
+                    return c != 0 ? c : Integer.compare(a, b);
+                };
+            case LOCATION_PRICE:
+                return (a, b) -> {
+                    int c = compareText(locations[a], locations[b]);
+                    if (c == 0) {
+                        c = Double.compare(prices[a], prices[b]);
+                    }
+                    return c != 0 ? c : Integer.compare(a, b);
+                };
+            default:
+                throw new IllegalArgumentException("Unknown sort " + sort);
+        }
+    }
+
+    // nulls last
+    private static int compareText(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(a, b);
+    }
+
+    private static void insert(Order order, IdComparator comparator, int id) {
+        int position = lowerBound(order, comparator, id);
+        if (order.size == order.ids.length) {
+            order.ids = Arrays.copyOf(order.ids, Math.max(64, order.size * 2));
+        }
+        System.arraycopy(order.ids, position, order.ids, position + 1, order.size - position);
+        order.ids[position] = id;
+        order.size++;
+        order.ranks = null;
+    }
+
+    // first position whose id sorts at or after the given one
+    private static int lowerBound(Order order, IdComparator comparator, int id) {
+        int lo = 0;
+        int hi = order.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparator.compare(order.ids[mid], id) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // bottom-up merge sort on primitive ids; avoids boxing a million Integers at startup
+    private static void mergeSort(int[] ids, int size, IdComparator comparator) {
+        int[] src = ids;
+        int[] dst = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size; lo += 2 * width) {
+                int mid = Math.min(lo + width, size);
+                int hi = Math.min(lo + 2 * width, size);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (i < mid && (j >= hi || comparator.compare(src[i], src[j]) <= 0)) {
+                        dst[k] = src[i++];
+                    } else {
+                        dst[k] = src[j++];
+                    }
+                }
+            }
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        if (src != ids) {
+            System.arraycopy(src, 0, ids, 0, size);
+        }
+    }
+
+    private static void reverse(int[] ids) {
+        for (int i = 0, j = ids.length - 1; i < j; i++, j--) {
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Space-Saving top-k summary over a stream of listing ids.
+ * Tracks at most {@code capacity} ids no matter how many distinct ids are
+ * seen. When the summary is full, a new id takes over the slot of the
+ * least-counted id and inherits its count, so counts may overestimate, but
+ * never by more than the evicted minimum.
+ *
+ * The counters are kept as a stream summary: slots sorted by count, highest
+ * first, grouped into runs of equal counts. Counts only grow by one, so an
+ * increment swaps the slot to the front of its run and moves it into the run
+ * above, and each update costs O(1). Ids are found through an open-addressing
+ * table of ints, so nothing is boxed.
+ * Not thread-safe; callers synchronize.
+ */
+class SpaceSaving {
+
+    // marks an empty table entry; listing ids are never negative
+    private static final int FREE = Integer.MIN_VALUE;
+
+    // tracked ids and their counts, highest count first
+    private final int[] ids;
+    private final long[] counts;
+    // run each slot belongs to
+    private final int[] runOf;
+    // first and last slot of each run; unused runs wait on a free stack
+    private final int[] runFirst;
+    private final int[] runLast;
+    private final int[] freeRuns;
+    private int freeCount;
+    // id to slot, linear probing
+    private final int[] keys;
+    private final int[] slots;
+    private final int mask;
+    private int size;
+    private long total;
+
+    SpaceSaving(int capacity) {
+        ids = new int[capacity];
+        counts = new long[capacity];
+        runOf = new int[capacity];
+        runFirst = new int[capacity];
+        runLast = new int[capacity];
+        freeRuns = new int[capacity];
+        // at most half full
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        keys = new int[tableSize];
+        slots = new int[tableSize];
+        mask = tableSize - 1;
+        clear();
+    }
+
+    void add(int id) {
+        total++;
+        int slot = slotOf(id);
+        if (slot >= 0) {
+            increment(slot);
+        } else if (size < ids.length) {
+            slot = size++;
+            ids[slot] = id;
+            counts[slot] = 1;
+            put(id, slot);
+            joinOrStartRun(slot);
+        } else {
+            // replace the minimum (last slot) and keep its count as the error bound
+            slot = size - 1;
+            delete(ids[slot]);
+            ids[slot] = id;
+            put(id, slot);
+            increment(slot);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, FREE);
+        for (int run = 0; run < freeRuns.length; run++) {
+            freeRuns[run] = run;
+        }
+        freeCount = freeRuns.length;
+        size = 0;
+        total = 0;
+    }
+
+    /**
+     * Adds this summary's counters into the given map, keyed by listing id.
+     */
+    void addTo(Map<Integer, Long> into) {
+        for (int i = 0; i < size; i++) {
+            into.merge(ids[i], counts[i], Long::sum);
+        }
+    }
+
+    /**
+     * @return number of ids added since the last clear, tracked or not
+     */
+    long total() {
+        return total;
+    }
+
+    // the run's first slot takes this one's id, gets the extra count and moves up a run
+    private void increment(int slot) {
+        int run = runOf[slot];
+        int first = runFirst[run];
+        if (first != slot) {
+            int id = ids[first];
+            ids[first] = ids[slot];
+            ids[slot] = id;
+            put(ids[first], first);
+            put(id, slot);
+        }
+        counts[first]++;
+        if (runLast[run] == first) {
+            freeRuns[freeCount++] = run;
+        } else {
+            runFirst[run] = first + 1;
+        }
+        joinOrStartRun(first);
+    }
+
+    // puts a slot into the run just above it if the counts match, else into a new run
+    private void joinOrStartRun(int slot) {
+        if (slot > 0 && counts[slot - 1] == counts[slot]) {
+            int run = runOf[slot - 1];
+            runLast[run] = slot;
+            runOf[slot] = run;
+        } else {
+            int run = freeRuns[--freeCount];
+            runFirst[run] = slot;
+            runLast[run] = slot;
+            runOf[slot] = run;
+        }
+    }
+
+    private int slotOf(int id) {
+        for (int i = hash(id); keys[i] != FREE; i = (i + 1) & mask) {
+            if (keys[i] == id) {
+                return slots[i];
+            }
+        }
+        return -1;
+    }
+
+    private void put(int id, int slot) {
+        int i = hash(id);
+        while (keys[i] != FREE && keys[i] != id) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        slots[i] = slot;
+    }
+
+    // backward-shift deletion, so lookups never need tombstones
+    private void delete(int id) {
+        int hole = hash(id);
+        while (keys[hole] != id) {
+            hole = (hole + 1) & mask;
+        }
+        for (int i = (hole + 1) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+            int home = hash(keys[i]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                slots[hole] = slots[i];
+                hole = i;
+            }
+        }
+        keys[hole] = FREE;
+    }
+
+    private int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Optional record of where startup time goes, from JVM start to the first
+ * frame of the login screen and the model loads that follow.
+ * Enable it with -Dsublet.startupTimeline=true. When it is off, every call is
+ * a no-op. The report is written to startup_timeline.txt once the first frame
+ * is shown, and written again at exit so later loads are included.
+ */
+public class StartupTimeline {
+
+    public static final boolean ENABLED = Boolean.getBoolean("sublet.startupTimeline");
+
+    private static final String REPORT_FILE = "startup_timeline.txt";
+
+    /** One point in time or one measured span. */
+    private static class Event {
+        final String name;
+        final String thread;
+        final long startNanos;
+        final long durationNanos;
+
+        Event(String name, long startNanos, long durationNanos) {
+            this.name = name;
+            this.thread = Thread.currentThread().getName();
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    // nanoTime has no fixed origin, so pin it to the wall clock once
+    private static final long originNanos = System.nanoTime();
+    private static final long originMillis = System.currentTimeMillis();
+    // ProcessHandle gives the JVM start time without pulling in java.management
+    private static final long jvmStartMillis = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli).orElse(originMillis);
+
+    private static final List<Event> events = new ArrayList<>();
+
+    static {
+        if (ENABLED) {
+            mark("timeline initialized");
+            Runtime.getRuntime().addShutdownHook(new Thread(StartupTimeline::writeReport));
+        }
+    }
+
+    /**
+     * Records that something happened now.
+     */
+    public static void mark(String event) {
+        if (ENABLED) {
+            add(new Event(event, System.nanoTime(), -1));
+        }
+    }
+
+    /**
+     * @return a start time to pass to {@link #span}, or 0 when disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records something that started at the given time and ends now.
+     */
+    public static void span(String event, long start) {
+        if (ENABLED) {
+            add(new Event(event, start, System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Writes every event so far to the report file, in time order.
+     */
+    public static synchronized void writeReport() {
+        if (!ENABLED) {
+            return;
+        }
+        List<Event> sorted = new ArrayList<>(events);
+        sorted.sort((a, b) -> Long.compare(a.startNanos, b.startNanos));
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Path.of(REPORT_FILE)))) {
+            out.println("  at ms     took ms  thread                  event");
+            out.printf("%8.1f  %10s  %-22s  %s%n", 0.0, "", "", "JVM start");
+            for (Event event : sorted) {
+                out.printf("%8.1f  %10s  %-22s  %s%n", sinceJvmStart(event.startNanos),
+                        event.durationNanos < 0 ? "" : String.format("%.2f", event.durationNanos / 1e6),
+                        event.thread, event.name);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing startup timeline: " + e.getMessage());
+        }
+    }
+
+    private static synchronized void add(Event event) {
+        events.add(event);
+    }
+
+    private static double sinceJvmStart(long nanos) {
+        return (originMillis - jvmStartMillis) + (nanos - originNanos) / 1e6;
+    }
+}
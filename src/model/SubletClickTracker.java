@@ -2,26 +2,90 @@ package model;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Counts detail-page views per listing.
+ * Safe to call from any thread: counters are keyed by the stable listing id
+ * and are LongAdders, so concurrent clicks on the same hot listing spread over
+ * striped cells instead of contending on a single value.
+ * Each click is also published on the ChangeFeed, which feeds the windowed
+ * rankings in PopularSublets off the caller's thread.
+ */
 public class SubletClickTracker {
-    private static final Map<SubletListing, Integer> clickCounts = new HashMap<>();
+    private static final ConcurrentHashMap<Integer, LongAdder> clickCounts = new ConcurrentHashMap<>();
+
+    static {
+        // subscribes the windowed rankings to the change feed before the first click
+        PopularSublets.load();
+    }
 
     public static void registerClick(SubletListing listing) {
-        clickCounts.put(listing, clickCounts.getOrDefault(listing, 0) + 1);
+        registerClick(listing.getId());
     }
 
-    public static Map<SubletListing, Integer> getClickCounts() {
-        return clickCounts;
+    public static void registerClick(int listingId) {
+        if (listingId < 0) {
+            return; // not stored in the catalog yet
+        }
+        LongAdder counter = clickCounts.get(listingId);
+        if (counter == null) {
+            counter = clickCounts.computeIfAbsent(listingId, id -> new LongAdder());
+        }
+        counter.increment();
+        ChangeFeed.click(listingId);
     }
-    static {
-        SubletListing cambridgeRoom = new SubletListing("Sunny Room in Cambridge", "Cambridge", 1200.0, "Close to Harvard", "short");
-        SubletListing allstonFlat = new SubletListing("Modern Flat in Allston", "Allston", 1500.0, "Furnished + All Utilities", "long");
-        //manually input clicks to testout subletclicktracker if it works 
-        SubletClickTracker.registerClick(cambridgeRoom);
-        SubletClickTracker.registerClick(cambridgeRoom);
-        SubletClickTracker.registerClick(cambridgeRoom);
-        SubletClickTracker.registerClick(cambridgeRoom);
-        SubletClickTracker.registerClick(cambridgeRoom); // 2 clicks
-        SubletClickTracker.registerClick(allstonFlat);   // 1 click
+
+    public static long getClickCount(int listingId) {
+        SampleClicks.load();
+        LongAdder counter = clickCounts.get(listingId);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Ranks listings by clicks within a recent time window.
+     *
+     * @param window time window to rank over
+     * @param n maximum number of listings to return
+     * @return the n most clicked listings plus the clicks on all others
+     */
+    public static PopularSublets.Ranking topListings(PopularSublets.Window window, int n) {
+        SampleClicks.load();
+        return PopularSublets.top(window, n);
+    }
+
+    /**
+     * Returns a point-in-time copy of all counts, keyed by listing id.
+     * Takes no locks; clicks that land during the copy may or may not be included.
+     */
+    public static Map<Integer, Long> snapshot() {
+        SampleClicks.load();
+        Map<Integer, Long> copy = new HashMap<>(clickCounts.size() * 2);
+        clickCounts.forEach((id, counter) -> copy.put(id, counter.sum()));
+        return copy;
+    }
+
+    /**
+     * Sample clicks, registered the first time counts are read. Seeding looks
+     * listings up in SubletStorage, so deferring it keeps the catalog from
+     * loading just because this class was touched.
+     */
+    private static class SampleClicks {
+        static {
+            SubletListing cambridgeRoom = SubletStorage.getListing(1);
+            SubletListing allstonRoom = SubletStorage.getListing(3);
+            //manually input clicks to testout subletclicktracker if it works 
+            SubletClickTracker.registerClick(cambridgeRoom);
+            SubletClickTracker.registerClick(cambridgeRoom);
+            SubletClickTracker.registerClick(cambridgeRoom);
+            SubletClickTracker.registerClick(cambridgeRoom);
+            SubletClickTracker.registerClick(cambridgeRoom); // 5 clicks
+            SubletClickTracker.registerClick(allstonRoom);   // 1 click
+        }
+
+        // triggers initialization
+        static void load() {
+        }
     }
 }
@@ -1,32 +1,61 @@
 package model;
 
-public class SubletListing {
-    private String title;
-    private String location;
-    private double price;
-    private String description;
-    private String subletMode;
-    private String region;
-    private String imagePath;
+/**
+ * One version of a listing. Immutable: an edit is a new SubletListing passed
+ * to SubletStorage.updateListing, so a reader holding a listing, or a
+ * catalog snapshot, never sees it change underneath.
+ */
+public final class SubletListing {
+    // position in the catalog, assigned by SubletStorage (-1 until stored)
+    private final int id;
+    private final String title;
+    private final String location;
+    private final double price;
+    private final String description;
+    private final String subletMode;
+    private final String region;
+    private final String imagePath;
+    // degrees; NaN until the listing has been placed on the map
+    private final double latitude;
+    private final double longitude;
+    // true if the point is a guess inside the neighbourhood, not the listing's address
+    private final boolean approximateLocation;
 
     public SubletListing(String title, String location, double price, String description, String subletMode, String imagePath) {
-        this.title = title;
-        this.location = location;
-        this.price = price;
-        this.description = description;
-        this.subletMode = subletMode;
-        this.imagePath = imagePath;
+        this(title, location, price, description, subletMode, imagePath, Double.NaN, Double.NaN);
     }
-    
+
     public SubletListing(String title, String location, double price, String description, String subletMode) {
+        this(title, location, price, description, subletMode, null);
+    }
+
+    /**
+     * A listing at a known point, e.g. geocoded from its address.
+     *
+     * @param latitude degrees, or NaN if unknown
+     * @param longitude degrees, or NaN if unknown
+     */
+    public SubletListing(String title, String location, double price, String description, String subletMode,
+            String imagePath, double latitude, double longitude) {
+        this(-1, title, location, price, description, subletMode, imagePath, latitude, longitude, false);
+    }
+
+    SubletListing(int id, String title, String location, double price, String description, String subletMode,
+            String imagePath, double latitude, double longitude, boolean approximateLocation) {
+        this.id = id;
         this.title = title;
         this.location = location;
         this.price = price;
         this.description = description;
         this.subletMode = subletMode;
-        this.imagePath = null;
+        this.region = null;
+        this.imagePath = imagePath;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.approximateLocation = approximateLocation;
     }
 
+    public int getId() { return id; }
     public String getTitle() { return title; }
     public String getLocation() { return location; }
     public double getPrice() { return price; }
@@ -34,11 +63,21 @@ public class SubletListing {
     public String getSubletMode() {return subletMode;}
     public String getRegion() {return region;}
     public String getImagePath() { return imagePath; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public boolean hasCoordinates() { return !Double.isNaN(latitude) && !Double.isNaN(longitude); }
+    /** @return true if the coordinates are only a guess inside the listing's neighbourhood */
+    public boolean isApproximateLocation() { return approximateLocation; }
 
-    public void setTitle(String title) { this.title = title; }
-    public void setLocation(String location) { this.location = location; }
-    public void setPrice(double price) { this.price = price; }
-    public void setDescription(String description) { this.description = description; }
-    public void setSubletMode(String subletMode) {this.subletMode = subletMode;}
-    public void setImagePath(String imagePath) {this.imagePath = imagePath;}
+    /** @return this listing stored under the given id */
+    SubletListing withId(int id) {
+        return new SubletListing(id, title, location, price, description, subletMode, imagePath,
+                latitude, longitude, approximateLocation);
+    }
+
+    /** @return this listing placed at a guessed point, marked approximate */
+    SubletListing withApproximateCoordinates(double latitude, double longitude) {
+        return new SubletListing(id, title, location, price, description, subletMode, imagePath,
+                latitude, longitude, true);
+    }
 }
@@ -1,76 +1,514 @@
 package model;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 
+/**
+ * The listing catalog. Plain Java with no JavaFX types, so it runs the same
+ * behind the desktop app and behind the headless HTTP server. Views watch it
+ * through {@link ListingListener}s or query it by id.
+ *
+ * Reads are multi-version: {@link #snapshot()} hands out the current
+ * immutable {@link CatalogSnapshot} without taking a lock. Writers are
+ * serialized on this class. Each change builds the next version and
+ * publishes it with one volatile write, and only then updates the indexes.
+ * So any id a reader gets from an index is already in every snapshot it
+ * takes afterwards.
+ */
 public class SubletStorage {
 	
 	
-    private static final ObservableList<SubletListing> listings = FXCollections.observableArrayList();
-
-    static {
-    	//two types of subletlisting instances
-        listings.add(new SubletListing("Near Northeastern University", "Boston", 900.0, "Close to campus", "short", "@../resources/images/sample.webp"));
-        listings.add(new SubletListing("Waterfront park 1 private room", "Cambridge", 1200.0, "Furnished and quiet","short"));
-        listings.add(new SubletListing("Luxury Flat #1", "Cambridge", 1998.77, "Close to campus","short"));
-        listings.add(new SubletListing("Sunny Room #2", "Allston", 1201.78, "Newly renovated","short"));
-        listings.add(new SubletListing("Downtown Apartment #3", "Brookline", 2203.38, "Utilities included", "long"));
-        listings.add(new SubletListing("Shared Room #4", "Cambridge", 2443.92, "Newly renovated","short"));
-        listings.add(new SubletListing("Private Suite #5", "Allston", 1725.98, "Close to campus", "long"));
-        listings.add(new SubletListing("Luxury Flat #6", "Brookline", 1981.16, "Utilities included","short"));
-        listings.add(new SubletListing("Luxury Flat #7", "Fenway", 1766.83, "Close to campus","short"));
-        listings.add(new SubletListing("Private Suite #8", "Brookline", 1657.47, "Furnished and quiet","short"));
-        listings.add(new SubletListing("Downtown Apartment #9", "Allston", 1649.07, "Pet friendly", "long"));
-        listings.add(new SubletListing("Shared Room #10", "Cambridge", 2258.91, "Furnished and quiet","short"));
-        listings.add(new SubletListing("Private Suite #11", "Allston", 1012.26, "Close to campus","short"));
-        listings.add(new SubletListing("Downtown Apartment #12", "Allston", 2214.74, "Newly renovated","short"));
-        listings.add(new SubletListing("Downtown Apartment #13", "Fenway", 1466.15, "Newly renovated", "long"));
-        listings.add(new SubletListing("Modern Loft #14", "Allston", 1309.29, "Utilities included","short"));
-        listings.add(new SubletListing("Shared Room #15", "Cambridge", 2482.2, "Furnished and quiet","short"));
-        listings.add(new SubletListing("Modern Loft #16", "Somerville", 2276.64, "Newly renovated", "long"));
-        listings.add(new SubletListing("Spacious Condo #17", "Cambridge", 2207.98, "Pet friendly", "long"));
-        listings.add(new SubletListing("Sunny Room #18", "Allston", 1963.3, "Utilities included", "long"));
-        listings.add(new SubletListing("Shared Room #19", "Brookline", 1096.87, "Utilities included", "long"));
-        listings.add(new SubletListing("Modern Loft #20", "Fenway", 2317.82, "Newly renovated", "long"));
-        listings.add(new SubletListing("Shared Room #21", "Allston", 1786.67, "Utilities included", "long"));
-        listings.add(new SubletListing("Luxury Flat #22", "Fenway", 1674.33, "Newly renovated", "long"));
-        listings.add(new SubletListing("Luxury Flat #23", "Somerville", 1383.12, "Pet friendly", "long"));
-        listings.add(new SubletListing("Sunny Room #24", "Brookline", 1297.28, "Pet friendly", "long"));
-        listings.add(new SubletListing("Sunny Room #25", "Fenway", 835.65, "Pet friendly", "long"));
-        listings.add(new SubletListing("Private Suite #26", "Allston", 1662.52, "Utilities included","short"));
-        listings.add(new SubletListing("Stylish Unit #27", "Brookline", 1874.07, "Utilities included","short"));
-        listings.add(new SubletListing("Private Suite #28", "Fenway", 1411.4, "Newly renovated","short"));
-        listings.add(new SubletListing("Modern Loft #29", "Cambridge", 2054.74, "Close to campus","short"));
-        listings.add(new SubletListing("Downtown Apartment #30", "Brookline", 1657.75, "Utilities included","short"));
-        listings.add(new SubletListing("Modern Loft #31", "Fenway", 1835.76, "Utilities included", "long"));
-        listings.add(new SubletListing("Luxury Flat #32", "Fenway", 1167.58, "Furnished and quiet", "long"));
-        listings.add(new SubletListing("Modern Loft #33", "Brookline", 845.36, "Furnished and quiet", "long"));
-        listings.add(new SubletListing("Quiet Basement #34", "Fenway", 1967.92, "Utilities included", "long"));
-        listings.add(new SubletListing("Downtown Apartment #35", "Cambridge", 1895.31, "Pet friendly","short"));
-        listings.add(new SubletListing("Modern Loft #36", "Somerville", 1897.29, "Close to campus", "long"));
-        listings.add(new SubletListing("Modern Loft #37", "Cambridge", 1676.84, "Newly renovated", "long"));
-        listings.add(new SubletListing("Quiet Basement #38", "Brookline", 1714.59, "Close to campus", "long"));
-        listings.add(new SubletListing("Shared Room #39", "Fenway", 2277.81, "Newly renovated", "long"));
-        listings.add(new SubletListing("Stylish Unit #40", "Fenway", 1440.9, "Pet friendly", "long"));
-        listings.add(new SubletListing("Spacious Condo #41", "Fenway", 1340.5, "Pet friendly","short"));
-        listings.add(new SubletListing("Downtown Apartment #42", "Somerville", 2072.13, "Furnished and quiet","short"));
-        listings.add(new SubletListing("Shared Room #43", "Somerville", 1605.99, "Close to campus","short"));
-        listings.add(new SubletListing("Spacious Condo #44", "Cambridge", 2074.18, "Newly renovated","short"));
-        listings.add(new SubletListing("Stylish Unit #45", "Cambridge", 1611.25, "Close to campus","short"));
-        listings.add(new SubletListing("Stylish Unit #46", "Fenway", 1682.5, "Pet friendly","short"));
-        listings.add(new SubletListing("Stylish Unit #47", "Allston", 1992.06, "Newly renovated","short"));
-        listings.add(new SubletListing("Spacious Condo #48", "Somerville", 2113.67, "Newly renovated","short"));
-        listings.add(new SubletListing("Spacious Condo #49", "Brookline", 1382.62, "Close to campus","short"));
-        listings.add(new SubletListing("Stylish Unit #50", "Brookline", 1767.7, "Pet friendly","short"));
-    }
-
-
-    public static ObservableList<SubletListing> getListings() {
-        return listings;
-    }
-
-    public static void addListing(SubletListing listing) {
-        listings.add(listing);
+    private static final List<ListingListener> listeners = new CopyOnWriteArrayList<>();
+
+    // fold the log into a fresh snapshot once this many listings have been appended
+    private static final int COMPACT_AFTER = 10_000;
+
+    // batches at least this large update the indexes in parallel
+    private static final int PARALLEL_BATCH = 10_000;
+
+    // set once the catalog holder has finished loading
+    private static volatile boolean loaded;
+
+    /**
+     * Holds the catalog. The JVM initializes this class the first time a
+     * listing is needed, not when SubletStorage is first referenced, so
+     * loading from disk stays off the startup path. Loading decodes the
+     * listings and fills the columns; the indexes wait for their first query.
+     */
+    private static class Catalog {
+        // the published version; replaced, never modified
+        static volatile CatalogSnapshot current;
+        static final LazyIndex<ListingIndex> index = new LazyIndex<>("price index", ListingIndex::new);
+        static final LazyIndex<SearchIndex> search = new LazyIndex<>("search index", SearchIndex::new);
+        static final ListingColumns columns = new ListingColumns();
+        static final LazyIndex<GeoIndex> geo = new LazyIndex<>("map index", GeoIndex::new);
+        static final LazyIndex<SortOrders> sorts = new LazyIndex<>("sort orders", SortOrders::new);
+        static ListingStore store = new ListingStore(Path.of("."));
+        static int appendedSinceSnapshot;
+
+        static {
+            long start = StartupTimeline.start();
+            List<SubletListing> listings = new ArrayList<>();
+            try {
+                List<SubletListing> persisted = store.load();
+                if (persisted.isEmpty()) {
+                    // first run: persist the sample listings so ids stay stable from now on
+                    List<SubletListing> seed = seedListings();
+                    store.writeSnapshot(seed);
+                    persisted = seed;
+                }
+                listings.addAll(persisted);
+                appendedSinceSnapshot = store.logRecords();
+                store.start();
+            } catch (IOException e) {
+                System.err.println("Error loading listings, running without persistence: " + e.getMessage());
+                store = null;
+                listings.clear();
+                listings.addAll(seedListings());
+            }
+            for (int i = 0; i < listings.size(); i++) {
+                listings.set(i, Places.placeInNeighbourhood(listings.get(i)));
+            }
+            columns.addAll(listings);
+            current = CatalogSnapshot.of(listings, columns.snapshot());
+            loaded = true;
+            StartupTimeline.span("load listing catalog (" + listings.size() + " listings)", start);
+        }
+    }
+
+    /**
+     * An index derived from the catalog, built from the published version the
+     * first time it is read. The build takes the SubletStorage lock, so no
+     * change slips in between; until then writers, which hold the same lock,
+     * skip it.
+     */
+    private static final class LazyIndex<T extends CatalogIndex> implements CatalogIndex {
+        private final String name;
+        private final Supplier<T> factory;
+        private volatile T index;
+
+        LazyIndex(String name, Supplier<T> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        T get() {
+            T built = index;
+            if (built != null) {
+                return built;
+            }
+            synchronized (SubletStorage.class) {
+                if (index == null) {
+                    long start = StartupTimeline.start();
+                    List<SubletListing> listings = Catalog.current.asList();
+                    T fresh = factory.get();
+                    fresh.addAll(listings);
+                    index = fresh;
+                    StartupTimeline.span("build " + name + " (" + listings.size() + " listings)", start);
+                }
+                return index;
+            }
+        }
+
+        @Override
+        public void add(SubletListing listing) {
+            T built = index;
+            if (built != null) {
+                built.add(listing);
+            }
+        }
+
+        @Override
+        public void addAll(List<SubletListing> listings) {
+            T built = index;
+            if (built != null) {
+                built.addAll(listings);
+            }
+        }
+
+        @Override
+        public void remove(SubletListing listing) {
+            T built = index;
+            if (built != null) {
+                built.remove(listing);
+            }
+        }
+    }
+
+    private static List<SubletListing> seedListings() {
+        List<SubletListing> seed = new ArrayList<>();
+        seed.add(new SubletListing("Near Northeastern University", "Boston", 900.0, "Close to campus", "short", "@../resources/images/sample.webp"));
+        seed.add(new SubletListing("Waterfront park 1 private room", "Cambridge", 1200.0, "Furnished and quiet","short"));
+        seed.add(new SubletListing("Luxury Flat #1", "Cambridge", 1998.77, "Close to campus","short"));
+        seed.add(new SubletListing("Sunny Room #2", "Allston", 1201.78, "Newly renovated","short"));
+        seed.add(new SubletListing("Downtown Apartment #3", "Brookline", 2203.38, "Utilities included", "long"));
+        seed.add(new SubletListing("Shared Room #4", "Cambridge", 2443.92, "Newly renovated","short"));
+        seed.add(new SubletListing("Private Suite #5", "Allston", 1725.98, "Close to campus", "long"));
+        seed.add(new SubletListing("Luxury Flat #6", "Brookline", 1981.16, "Utilities included","short"));
+        seed.add(new SubletListing("Luxury Flat #7", "Fenway", 1766.83, "Close to campus","short"));
+        seed.add(new SubletListing("Private Suite #8", "Brookline", 1657.47, "Furnished and quiet","short"));
+        seed.add(new SubletListing("Downtown Apartment #9", "Allston", 1649.07, "Pet friendly", "long"));
+        seed.add(new SubletListing("Shared Room #10", "Cambridge", 2258.91, "Furnished and quiet","short"));
+        seed.add(new SubletListing("Private Suite #11", "Allston", 1012.26, "Close to campus","short"));
+        seed.add(new SubletListing("Downtown Apartment #12", "Allston", 2214.74, "Newly renovated","short"));
+        seed.add(new SubletListing("Downtown Apartment #13", "Fenway", 1466.15, "Newly renovated", "long"));
+        seed.add(new SubletListing("Modern Loft #14", "Allston", 1309.29, "Utilities included","short"));
+        seed.add(new SubletListing("Shared Room #15", "Cambridge", 2482.2, "Furnished and quiet","short"));
+        seed.add(new SubletListing("Modern Loft #16", "Somerville", 2276.64, "Newly renovated", "long"));
+        seed.add(new SubletListing("Spacious Condo #17", "Cambridge", 2207.98, "Pet friendly", "long"));
+        seed.add(new SubletListing("Sunny Room #18", "Allston", 1963.3, "Utilities included", "long"));
+        seed.add(new SubletListing("Shared Room #19", "Brookline", 1096.87, "Utilities included", "long"));
+        seed.add(new SubletListing("Modern Loft #20", "Fenway", 2317.82, "Newly renovated", "long"));
+        seed.add(new SubletListing("Shared Room #21", "Allston", 1786.67, "Utilities included", "long"));
+        seed.add(new SubletListing("Luxury Flat #22", "Fenway", 1674.33, "Newly renovated", "long"));
+        seed.add(new SubletListing("Luxury Flat #23", "Somerville", 1383.12, "Pet friendly", "long"));
+        seed.add(new SubletListing("Sunny Room #24", "Brookline", 1297.28, "Pet friendly", "long"));
+        seed.add(new SubletListing("Sunny Room #25", "Fenway", 835.65, "Pet friendly", "long"));
+        seed.add(new SubletListing("Private Suite #26", "Allston", 1662.52, "Utilities included","short"));
+        seed.add(new SubletListing("Stylish Unit #27", "Brookline", 1874.07, "Utilities included","short"));
+        seed.add(new SubletListing("Private Suite #28", "Fenway", 1411.4, "Newly renovated","short"));
+        seed.add(new SubletListing("Modern Loft #29", "Cambridge", 2054.74, "Close to campus","short"));
+        seed.add(new SubletListing("Downtown Apartment #30", "Brookline", 1657.75, "Utilities included","short"));
+        seed.add(new SubletListing("Modern Loft #31", "Fenway", 1835.76, "Utilities included", "long"));
+        seed.add(new SubletListing("Luxury Flat #32", "Fenway", 1167.58, "Furnished and quiet", "long"));
+        seed.add(new SubletListing("Modern Loft #33", "Brookline", 845.36, "Furnished and quiet", "long"));
+        seed.add(new SubletListing("Quiet Basement #34", "Fenway", 1967.92, "Utilities included", "long"));
+        seed.add(new SubletListing("Downtown Apartment #35", "Cambridge", 1895.31, "Pet friendly","short"));
+        seed.add(new SubletListing("Modern Loft #36", "Somerville", 1897.29, "Close to campus", "long"));
+        seed.add(new SubletListing("Modern Loft #37", "Cambridge", 1676.84, "Newly renovated", "long"));
+        seed.add(new SubletListing("Quiet Basement #38", "Brookline", 1714.59, "Close to campus", "long"));
+        seed.add(new SubletListing("Shared Room #39", "Fenway", 2277.81, "Newly renovated", "long"));
+        seed.add(new SubletListing("Stylish Unit #40", "Fenway", 1440.9, "Pet friendly", "long"));
+        seed.add(new SubletListing("Spacious Condo #41", "Fenway", 1340.5, "Pet friendly","short"));
+        seed.add(new SubletListing("Downtown Apartment #42", "Somerville", 2072.13, "Furnished and quiet","short"));
+        seed.add(new SubletListing("Shared Room #43", "Somerville", 1605.99, "Close to campus","short"));
+        seed.add(new SubletListing("Spacious Condo #44", "Cambridge", 2074.18, "Newly renovated","short"));
+        seed.add(new SubletListing("Stylish Unit #45", "Cambridge", 1611.25, "Close to campus","short"));
+        seed.add(new SubletListing("Stylish Unit #46", "Fenway", 1682.5, "Pet friendly","short"));
+        seed.add(new SubletListing("Stylish Unit #47", "Allston", 1992.06, "Newly renovated","short"));
+        seed.add(new SubletListing("Spacious Condo #48", "Somerville", 2113.67, "Newly renovated","short"));
+        seed.add(new SubletListing("Spacious Condo #49", "Brookline", 1382.62, "Close to campus","short"));
+        seed.add(new SubletListing("Stylish Unit #50", "Brookline", 1767.7, "Pet friendly","short"));
+        for (int i = 0; i < seed.size(); i++) {
+            seed.set(i, seed.get(i).withId(i));
+        }
+        return seed;
+    }
+
+
+    /**
+     * @return the current version of the catalog; never changes once returned
+     */
+    public static CatalogSnapshot snapshot() {
+        return Catalog.current;
+    }
+
+    /**
+     * @return the current version of the catalog as a read-only list, in id order
+     */
+    public static List<SubletListing> getListings() {
+        return snapshot().asList();
+    }
+
+    /**
+     * @return number of listings in the catalog
+     */
+    public static int size() {
+        return snapshot().size();
+    }
+
+    /**
+     * @return the current version of the listing with the given id, or null if there is none
+     */
+    public static SubletListing getListing(int id) {
+        return snapshot().get(id);
+    }
+
+    /**
+     * Looks up listings through the location and price indexes.
+     *
+     * @param query location and price range to match
+     * @return matching listings, cheapest first
+     */
+    public static List<SubletListing> query(ListingQuery query) {
+        return materialize(queryIds(query));
+    }
+
+    /**
+     * Like {@link #query}, but returns listing ids so callers can materialize
+     * only the rows they show. Safe to call from any thread.
+     * With a distance limit the ids come nearest first, otherwise cheapest first.
+     */
+    public static int[] queryIds(ListingQuery query) {
+        return queryIds(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #queryIds(ListingQuery)}, but only the first limit ids:
+     * the cheapest, or with a distance limit the nearest. Across all
+     * locations, each region shard gives up at most limit ids.
+     */
+    public static int[] queryIds(ListingQuery query, int limit) {
+        if (!query.hasRadius()) {
+            if (query.getMode() == null) {
+                return Catalog.index.get().query(query, null, limit);
+            }
+            // the mode is checked inside each shard, against the columns
+            ColumnarSnapshot snapshot = columns();
+            return Catalog.index.get().query(query, id -> snapshot.matches(id, query), limit);
+        }
+        // the spatial index narrows the candidates; the rest of the query is checked against the columns
+        int[] ids = withinIds(query);
+        ColumnarSnapshot snapshot = columns();
+        int count = 0;
+        for (int i = 0; i < ids.length && count < limit; i++) {
+            if (snapshot.matches(ids[i], query)) {
+                ids[count++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Full-text search over titles and descriptions, narrowed by location and price.
+     *
+     * @param text words to look for; prefixes and small typos also match
+     * @param query location and price range to match
+     * @param limit maximum number of results
+     * @return matching listings, best match first
+     */
+    public static List<SubletListing> search(String text, ListingQuery query, int limit) {
+        return materialize(searchIds(text, query, limit));
+    }
+
+    /**
+     * Like {@link #search}, but returns listing ids. Safe to call from any thread.
+     */
+    public static int[] searchIds(String text, ListingQuery query, int limit) {
+        // the columns are safe to read from a background thread; the listing list is not
+        ColumnarSnapshot snapshot = columns();
+        // without a filter the index may rank common terms by their champion lists
+        IntPredicate filter = query.isAll() ? null : id -> snapshot.matches(id, query);
+        return Catalog.search.get().search(text, filter, limit);
+    }
+
+    /**
+     * The k listings nearest a point that satisfy the query, e.g. the closest
+     * places to a campus. Safe to call from any thread.
+     *
+     * @return listing ids, nearest first
+     */
+    public static int[] nearestIds(double latitude, double longitude, int k, ListingQuery query) {
+        ColumnarSnapshot snapshot = columns();
+        return Catalog.geo.get().nearest(latitude, longitude, k, id -> snapshot.matches(id, query));
+    }
+
+    /**
+     * Puts listing ids in one of the precomputed orders, without running a
+     * comparator sort. Safe to call from any thread.
+     *
+     * @param ids the listings to sort, e.g. a query result, or null for the whole catalog
+     * @return the ids, sorted
+     */
+    public static int[] sortedIds(ListingSort sort, boolean descending, int[] ids) {
+        return Catalog.sorts.get().sort(sort, descending, ids);
+    }
+
+    /**
+     * @return ids of the listings within the query's distance limit, nearest
+     *         first, ignoring the rest of the query
+     */
+    static int[] withinIds(ListingQuery query) {
+        return Catalog.geo.get().within(query.getLatitude(), query.getLongitude(), query.getRadiusKm());
+    }
+
+    private static List<SubletListing> materialize(int[] ids) {
+        CatalogSnapshot snapshot = snapshot();
+        List<SubletListing> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(snapshot.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * @return a column-oriented copy of the catalog for analytics, as of now
+     */
+    public static ColumnarSnapshot columns() {
+        return snapshot().columns();
+    }
+
+    /**
+     * Stores a new listing under the next free id.
+     *
+     * @return the stored version, with its id and map position
+     */
+    public static SubletListing addListing(SubletListing listing) {
+        SubletListing stored;
+        long sequence;
+        synchronized (SubletStorage.class) {
+            stored = Places.placeInNeighbourhood(listing.withId(Catalog.current.size()));
+            Catalog.columns.add(stored);
+            Catalog.current = Catalog.current.append(stored, Catalog.columns.snapshot());
+            Catalog.index.add(stored);
+            Catalog.geo.add(stored);
+            Catalog.sorts.add(stored);
+            Catalog.search.add(stored);
+            persist(stored);
+            for (ListingListener listener : listeners) {
+                listener.listingAdded(stored);
+            }
+            sequence = ChangeFeed.reserve(1);
+        }
+        // outside the lock: a lagging feed subscriber must not hold up other writers
+        ChangeFeed.listingAdded(sequence, stored);
+        return stored;
     }
-}
 
+    /**
+     * Stores a batch of new listings under the next free ids, as one change:
+     * one new snapshot, one bulk update per index, and one notification per
+     * listener for the whole batch. Used for bulk imports, where adding
+     * listings one at a time would re-sort and re-notify for each of them.
+     *
+     * @return the stored versions, in the order given
+     */
+    public static List<SubletListing> addListings(List<SubletListing> listings) {
+        List<SubletListing> stored = new ArrayList<>(listings.size());
+        long sequence;
+        synchronized (SubletStorage.class) {
+            int next = Catalog.current.size();
+            for (SubletListing listing : listings) {
+                stored.add(Places.placeInNeighbourhood(listing.withId(next++)));
+            }
+            Catalog.columns.addAll(stored);
+            Catalog.current = Catalog.current.appendAll(stored, Catalog.columns.snapshot());
+            if (stored.size() >= PARALLEL_BATCH) {
+                // the indexes share nothing and each has its own lock, so they can be built side by side
+                CompletableFuture.allOf(
+                        CompletableFuture.runAsync(() -> Catalog.index.addAll(stored)),
+                        CompletableFuture.runAsync(() -> Catalog.geo.addAll(stored)),
+                        CompletableFuture.runAsync(() -> Catalog.sorts.addAll(stored)),
+                        CompletableFuture.runAsync(() -> Catalog.search.addAll(stored))).join();
+            } else {
+                Catalog.index.addAll(stored);
+                Catalog.geo.addAll(stored);
+                Catalog.sorts.addAll(stored);
+                Catalog.search.addAll(stored);
+            }
+            persistAll(stored);
+            for (ListingListener listener : listeners) {
+                listener.listingsAdded(stored);
+            }
+            sequence = ChangeFeed.reserve(stored.size());
+        }
+        for (SubletListing listing : stored) {
+            ChangeFeed.listingAdded(sequence++, listing);
+        }
+        return stored;
+    }
+
+    /**
+     * Replaces an existing listing with a new version. Readers holding an
+     * older snapshot keep seeing the old version; indexes and aggregates are
+     * told both.
+     *
+     * @param id id of the listing to replace
+     * @param updated the new version of the listing
+     * @return the stored version
+     */
+    public static SubletListing updateListing(int id, SubletListing updated) {
+        SubletListing before;
+        long sequence;
+        synchronized (SubletStorage.class) {
+            before = getListing(id);
+            if (before == null) {
+                throw new IllegalArgumentException("No listing with id " + id);
+            }
+            updated = Places.placeInNeighbourhood(updated.withId(id));
+            Catalog.columns.update(updated);
+            Catalog.current = Catalog.current.replace(updated, Catalog.columns.snapshot());
+            Catalog.index.remove(before);
+            Catalog.index.add(updated);
+            Catalog.geo.remove(before);
+            Catalog.geo.add(updated);
+            Catalog.sorts.remove(before);
+            Catalog.sorts.add(updated);
+            Catalog.search.remove(before);
+            Catalog.search.add(updated);
+            persist(updated);
+            for (ListingListener listener : listeners) {
+                listener.listingUpdated(before, updated);
+            }
+            sequence = ChangeFeed.reserve(1);
+        }
+        ChangeFeed.listingUpdated(sequence, before, updated);
+        return updated;
+    }
+
+    /**
+     * Registers a listener for catalog changes. The listener is first told
+     * about every listing already in the catalog, so it can build its state
+     * without a separate scan.
+     */
+    public static synchronized void addListener(ListingListener listener) {
+        for (SubletListing listing : Catalog.current.asList()) {
+            listener.listingAdded(listing);
+        }
+        listeners.add(listener);
+    }
+
+    // package-private access for aggregates that need index lookups
+    static synchronized double minPrice(String location) {
+        return Catalog.index.get().minPrice(location);
+    }
+
+    static synchronized double maxPrice(String location) {
+        return Catalog.index.get().maxPrice(location);
+    }
+
+    private static void persist(SubletListing listing) {
+        if (Catalog.store != null) {
+            Catalog.store.append(listing);
+            if (++Catalog.appendedSinceSnapshot >= COMPACT_AFTER) {
+                // the snapshot is immutable, so the writer thread can read it without a copy
+                Catalog.store.compact(Catalog.current.asList());
+                Catalog.appendedSinceSnapshot = 0;
+            }
+        }
+    }
+
+    // a batch that would trigger compaction anyway goes straight into the snapshot
+    private static void persistAll(List<SubletListing> listings) {
+        if (Catalog.store == null) {
+            return;
+        }
+        if (Catalog.appendedSinceSnapshot + listings.size() >= COMPACT_AFTER) {
+            Catalog.store.compact(Catalog.current.asList());
+            Catalog.appendedSinceSnapshot = 0;
+            return;
+        }
+        for (SubletListing listing : listings) {
+            Catalog.store.append(listing);
+        }
+        Catalog.appendedSinceSnapshot += listings.size();
+    }
+
+    /**
+     * Blocks until every added listing has been written to disk.
+     *
+     * @throws IOException if a write failed; the listings are kept and retried
+     */
+    public static void flush() throws IOException {
+        if (loaded && Catalog.store != null) {
+            Catalog.store.flush();
+        }
+    }
+}
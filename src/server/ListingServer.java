@@ -0,0 +1,538 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import model.AppliedApplication;
+import model.ApplicationQueue;
+import model.CatalogSnapshot;
+import model.CredentialStore;
+import model.ListingFacets;
+import model.ListingQuery;
+import model.ListingSort;
+import model.Places;
+import model.PopularSublets;
+import model.SubletClickTracker;
+import model.SubletListing;
+import model.SubletStorage;
+
+/**
+ * Embedded HTTP/JSON server in front of the model, so the catalog can run as
+ * a shared backend without the desktop app.
+ * Every request gets its own virtual thread. A request that waits on a lock
+ * or on password hashing parks a cheap virtual thread instead of holding a
+ * pooled platform thread, so one node can keep thousands of students'
+ * requests in flight.
+ *
+ * Endpoints:
+ * - GET  /health
+ * - GET  /listings?location=&mode=&min=&max=&campus=&radius=&q=&sort=&desc=&offset=&limit=
+ * - POST /listings                  {title, location, price, description, subletMode, imagePath, latitude, longitude}
+ * - GET  /listings/nearest?campus=|lat=&lng=&k=&location=&mode=&min=&max=
+ * - GET  /listings/{id}
+ * - GET  /listings/{id}/clicks
+ * - POST /listings/{id}/clicks
+ * - GET  /popular?window=LAST_HOUR&n=10
+ * - GET  /applications
+ * - POST /applications              {name, email, listingId}
+ * - POST /login                     {username, password}
+ * - POST /register                  {username, password}
+ *
+ * Usage: ListingServer [port]
+ */
+public class ListingServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    // connections the OS queues while every accept is busy
+    private static final int BACKLOG = 4096;
+    private static final int DEFAULT_PAGE = 50;
+    private static final int MAX_PAGE = 200;
+    private static final int SEARCH_LIMIT = 500;
+    private static final double DEFAULT_RADIUS_KM = 1.5;
+    private static final int DEFAULT_NEAREST = 10;
+    private static final int MAX_BODY = 64 * 1024;
+
+    /** A status code and a JSON body, or no body for 204. */
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private interface Handler {
+        Response handle(HttpExchange exchange, String[] path) throws IOException;
+    }
+
+    /** Turned into a 4xx response with the message as the error. */
+    private static class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final HttpServer http;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param port port to listen on, or 0 for any free port
+     */
+    public ListingServer(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        http.setExecutor(executor);
+        route("/health", ListingServer::health);
+        route("/listings", ListingServer::listings);
+        route("/popular", ListingServer::popular);
+        route("/applications", ListingServer::applications);
+        route("/login", ListingServer::login);
+        route("/register", ListingServer::register);
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to the given time for the ones in flight.
+     */
+    public void stop(int delaySeconds) {
+        http.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long start = System.nanoTime();
+        int listings = SubletStorage.size();
+        ListingServer server = new ListingServer(port);
+        server.start();
+        System.out.printf("Serving %d listings on http://localhost:%d (loaded in %d ms)%n",
+                listings, server.getPort(), (System.nanoTime() - start) / 1_000_000);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            try {
+                SubletStorage.flush();
+            } catch (IOException e) {
+                System.err.println("Listings not saved at shutdown: " + e.getMessage());
+            }
+        }, "server-shutdown"));
+    }
+
+    private void route(String prefix, Handler handler) {
+        http.createContext(prefix, exchange -> {
+            Response response;
+            try {
+                String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+                if (!path[0].equals(prefix.substring(1))) {
+                    throw new HttpError(404, "Not found");
+                }
+                response = handler.handle(exchange, path);
+            } catch (HttpError e) {
+                response = error(e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                response = error(400, e.getMessage());
+            } catch (Exception e) {
+                e.printStackTrace();
+                response = error(500, "Internal error");
+            }
+            send(exchange, response);
+        });
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        try (exchange) {
+            if (response.body == null) {
+                exchange.sendResponseHeaders(response.status, -1);
+                return;
+            }
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    // ---- handlers ----
+
+    private static Response health(HttpExchange exchange, String[] path) {
+        requireMethod(exchange, "GET");
+        return ok(new StringBuilder("{\"status\":\"ok\",\"listings\":").append(SubletStorage.size()).append('}'));
+    }
+
+    private static Response listings(HttpExchange exchange, String[] path) throws IOException {
+        if (path.length == 1) {
+            if ("POST".equals(exchange.getRequestMethod())) {
+                return addListing(exchange);
+            }
+            requireMethod(exchange, "GET");
+            return queryListings(query(exchange));
+        }
+        if (path.length == 2 && path[1].equals("nearest")) {
+            requireMethod(exchange, "GET");
+            return nearestListings(query(exchange));
+        }
+        int id = parseId(path[1]);
+        if (path.length == 2) {
+            requireMethod(exchange, "GET");
+            SubletListing listing = SubletStorage.getListing(id);
+            if (listing == null) {
+                throw new HttpError(404, "No listing with id " + id);
+            }
+            return ok(listing(new StringBuilder(), listing));
+        }
+        if (path.length == 3 && path[2].equals("clicks")) {
+            if (id >= SubletStorage.size()) {
+                throw new HttpError(404, "No listing with id " + id);
+            }
+            if ("POST".equals(exchange.getRequestMethod())) {
+                SubletClickTracker.registerClick(id);
+                return new Response(204, null);
+            }
+            requireMethod(exchange, "GET");
+            return ok(new StringBuilder("{\"listingId\":").append(id)
+                    .append(",\"clicks\":").append(SubletClickTracker.getClickCount(id)).append('}'));
+        }
+        throw new HttpError(404, "Not found");
+    }
+
+    // same pipeline as the sublet list screen: index query or text search, then a precomputed sort
+    private static Response queryListings(Map<String, String> params) {
+        ListingQuery filter = new ListingQuery(params.get("location"), params.get("mode"),
+                parseDouble(params, "min", 0), parseDouble(params, "max", Double.MAX_VALUE));
+        String campusName = params.get("campus");
+        if (campusName != null) {
+            Places.Campus campus = campus(campusName);
+            filter = filter.within(campus.getLatitude(), campus.getLongitude(),
+                    parseDouble(params, "radius", DEFAULT_RADIUS_KM));
+        }
+        String text = params.get("q");
+        boolean search = text != null && !text.isBlank();
+        ListingSort sort = params.containsKey("sort") ? parseEnum(ListingSort.class, "sort", params.get("sort")) : null;
+        boolean descending = Boolean.parseBoolean(params.get("desc"));
+        int offset = Math.max(0, parseInt(params, "offset", 0));
+        int limit = Math.max(0, Math.min(MAX_PAGE, parseInt(params, "limit", DEFAULT_PAGE)));
+        int[] ids;
+        int total;
+        if (!search && (sort == null || (sort == ListingSort.PRICE && !descending && !filter.hasRadius()))) {
+            // already in index order: gather just this page from the shards, count the rest from the facets
+            ids = SubletStorage.queryIds(filter, (int) Math.min(Integer.MAX_VALUE, (long) offset + limit));
+            total = Math.max(ids.length, ListingFacets.count(filter));
+        } else {
+            ids = search ? SubletStorage.searchIds(text, filter, SEARCH_LIMIT) : SubletStorage.queryIds(filter);
+            if (sort != null) {
+                ids = SubletStorage.sortedIds(sort, descending, ids);
+            }
+            total = ids.length;
+        }
+        CatalogSnapshot snapshot = SubletStorage.snapshot();
+        StringBuilder out = new StringBuilder("{\"total\":").append(total)
+                .append(",\"offset\":").append(offset).append(",\"listings\":[");
+        for (int i = offset; i < Math.min(ids.length, offset + limit); i++) {
+            if (i > offset) {
+                out.append(',');
+            }
+            listing(out, snapshot.get(ids[i]));
+        }
+        return ok(out.append("]}"));
+    }
+
+    // the k closest listings that pass the filters, nearest first, however far away they are
+    private static Response nearestListings(Map<String, String> params) {
+        ListingQuery filter = new ListingQuery(params.get("location"), params.get("mode"),
+                parseDouble(params, "min", 0), parseDouble(params, "max", Double.MAX_VALUE));
+        double latitude;
+        double longitude;
+        String campusName = params.get("campus");
+        if (campusName != null) {
+            Places.Campus campus = campus(campusName);
+            latitude = campus.getLatitude();
+            longitude = campus.getLongitude();
+        } else if (params.containsKey("lat") && params.containsKey("lng")) {
+            latitude = parseDouble(params, "lat", 0);
+            longitude = parseDouble(params, "lng", 0);
+            checkCoordinates(latitude, longitude);
+        } else {
+            throw new IllegalArgumentException("campus or lat and lng are required");
+        }
+        int k = Math.max(1, Math.min(MAX_PAGE, parseInt(params, "k", DEFAULT_NEAREST)));
+        int[] ids = SubletStorage.nearestIds(latitude, longitude, k, filter);
+        CatalogSnapshot snapshot = SubletStorage.snapshot();
+        StringBuilder out = new StringBuilder("{\"listings\":[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            listing(out, snapshot.get(ids[i]));
+        }
+        return ok(out.append("]}"));
+    }
+
+    private static Response addListing(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = body(exchange);
+        String title = requiredString(body, "title");
+        String description = requiredString(body, "description");
+        double price = optionalNumber(body, "price", 0);
+        if (price < 0) {
+            throw new IllegalArgumentException("price cannot be negative");
+        }
+        double latitude = optionalNumber(body, "latitude", Double.NaN);
+        double longitude = optionalNumber(body, "longitude", Double.NaN);
+        if (Double.isNaN(latitude) != Double.isNaN(longitude)) {
+            throw new IllegalArgumentException("latitude and longitude go together");
+        }
+        if (!Double.isNaN(latitude)) {
+            checkCoordinates(latitude, longitude);
+        }
+        SubletListing listing = new SubletListing(title, optionalString(body, "location", "User Submitted"),
+                price, description, optionalString(body, "subletMode", "short"),
+                optionalString(body, "imagePath", null), latitude, longitude);
+        SubletListing stored = SubletStorage.addListing(listing);
+        return new Response(201, listing(new StringBuilder(), stored).toString());
+    }
+
+    private static Response popular(HttpExchange exchange, String[] path) {
+        requireMethod(exchange, "GET");
+        Map<String, String> params = query(exchange);
+        String windowName = params.getOrDefault("window", PopularSublets.Window.LAST_HOUR.name());
+        PopularSublets.Window window = parseEnum(PopularSublets.Window.class, "window", windowName);
+        int n = Math.max(1, Math.min(MAX_PAGE, parseInt(params, "n", 10)));
+        PopularSublets.Ranking ranking = SubletClickTracker.topListings(window, n);
+        StringBuilder out = new StringBuilder("{\"window\":\"").append(window.name()).append("\",\"top\":[");
+        List<PopularSublets.Entry> top = ranking.getTop();
+        for (int i = 0; i < top.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append("{\"listingId\":").append(top.get(i).getListingId())
+                    .append(",\"clicks\":").append(top.get(i).getClicks()).append('}');
+        }
+        return ok(out.append("],\"otherClicks\":").append(ranking.getOtherClicks()).append('}'));
+    }
+
+    private static Response applications(HttpExchange exchange, String[] path) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            Map<String, Object> body = body(exchange);
+            String name = requiredString(body, "name");
+            String email = requiredString(body, "email");
+            int listingId = (int) optionalNumber(body, "listingId", -1);
+            SubletListing listing = SubletStorage.getListing(listingId);
+            if (listing == null) {
+                throw new HttpError(404, "No listing with id " + listingId);
+            }
+            ApplicationQueue.enqueue(new AppliedApplication(name, email, listing));
+            return new Response(201, null);
+        }
+        requireMethod(exchange, "GET");
+        StringBuilder out = new StringBuilder("{\"pending\":");
+        applications(out, ApplicationQueue.getAll()).append(",\"processed\":");
+        return ok(applications(out, ApplicationQueue.getProcessed()).append('}'));
+    }
+
+    // the hashing pool is bounded; waiting for it only parks this request's virtual thread
+    private static Response login(HttpExchange exchange, String[] path) throws IOException {
+        requireMethod(exchange, "POST");
+        Map<String, Object> body = body(exchange);
+        String username = requiredString(body, "username");
+        String role = CredentialStore.authenticate(username, requiredString(body, "password")).join();
+        if (role == null) {
+            throw new HttpError(401, "Invalid username or password");
+        }
+        StringBuilder out = new StringBuilder("{\"username\":");
+        Json.string(out, username).append(",\"role\":");
+        return ok(Json.string(out, role).append('}'));
+    }
+
+    private static Response register(HttpExchange exchange, String[] path) throws IOException {
+        requireMethod(exchange, "POST");
+        Map<String, Object> body = body(exchange);
+        boolean created = CredentialStore.register(requiredString(body, "username"),
+                requiredString(body, "password")).join();
+        if (!created) {
+            throw new HttpError(409, "Username is taken");
+        }
+        return new Response(201, null);
+    }
+
+    // ---- helpers ----
+
+    private static StringBuilder listing(StringBuilder out, SubletListing listing) {
+        out.append("{\"id\":").append(listing.getId());
+        Json.string(out.append(",\"title\":"), listing.getTitle());
+        Json.string(out.append(",\"location\":"), listing.getLocation());
+        Json.number(out.append(",\"price\":"), listing.getPrice());
+        Json.string(out.append(",\"description\":"), listing.getDescription());
+        Json.string(out.append(",\"subletMode\":"), listing.getSubletMode());
+        Json.string(out.append(",\"imagePath\":"), listing.getImagePath());
+        Json.number(out.append(",\"latitude\":"), listing.getLatitude());
+        Json.number(out.append(",\"longitude\":"), listing.getLongitude());
+        // a guessed spot inside the neighbourhood, not the listing's address
+        out.append(",\"approximateLocation\":").append(listing.isApproximateLocation());
+        return out.append('}');
+    }
+
+    private static StringBuilder applications(StringBuilder out, List<AppliedApplication> applications) {
+        out.append('[');
+        for (int i = 0; i < applications.size(); i++) {
+            AppliedApplication app = applications.get(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            Json.string(out.append("{\"name\":"), app.getName());
+            Json.string(out.append(",\"email\":"), app.getEmail());
+            out.append(",\"listingId\":").append(app.getListing() == null ? -1 : app.getListing().getId()).append('}');
+        }
+        return out.append(']');
+    }
+
+    private static Response ok(StringBuilder body) {
+        return new Response(200, body.toString());
+    }
+
+    private static Response error(int status, String message) {
+        StringBuilder out = new StringBuilder("{\"error\":");
+        return new Response(status, Json.string(out, message).append('}').toString());
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!method.equals(exchange.getRequestMethod())) {
+            throw new HttpError(405, "Method not allowed");
+        }
+    }
+
+    private static Map<String, Object> body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY + 1);
+            if (bytes.length > MAX_BODY) {
+                throw new HttpError(413, "Request body too large");
+            }
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if (!value.isEmpty()) {
+                params.put(name, value);
+            }
+        }
+        return params;
+    }
+
+    private static Places.Campus campus(String name) {
+        Places.Campus campus = Places.Campus.byDisplayName(name);
+        return campus != null ? campus : parseEnum(Places.Campus.class, "campus", name);
+    }
+
+    private static void checkCoordinates(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90)) {
+            throw new IllegalArgumentException("latitude must be between -90 and 90");
+        }
+        if (!(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("longitude must be between -180 and 180");
+        }
+    }
+
+    private static int parseId(String text) {
+        try {
+            int id = Integer.parseInt(text);
+            if (id >= 0) {
+                return id;
+            }
+        } catch (NumberFormatException e) {
+            // falls through to the 404
+        }
+        throw new HttpError(404, "No listing with id " + text);
+    }
+
+    private static int parseInt(Map<String, String> params, String name, int fallback) {
+        String value = params.get(name);
+        try {
+            return value == null ? fallback : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number");
+        }
+    }
+
+    private static double parseDouble(Map<String, String> params, String name, double fallback) {
+        String value = params.get(name);
+        try {
+            return value == null ? fallback : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + name + " " + value);
+        }
+    }
+
+    private static String requiredString(Map<String, Object> body, String name) {
+        String value = optionalString(body, name, null);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return value;
+    }
+
+    private static String optionalString(Map<String, Object> body, String name, String fallback) {
+        Object value = body.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException(name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static double optionalNumber(Map<String, Object> body, String name, double fallback) {
+        Object value = body.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        if (!(value instanceof Double)) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+        return (Double) value;
+    }
+}